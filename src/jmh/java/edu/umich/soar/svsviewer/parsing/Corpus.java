@@ -0,0 +1,58 @@
+package edu.umich.soar.svsviewer.parsing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/** SGEL input for the benchmarks: a recorded sample session and synthetic worst cases. */
+public class Corpus {
+  private static final String SAMPLE_RESOURCE = "/edu/umich/soar/svsviewer/thor-soar-input.txt";
+  // the viewer's console output was pasted into the sample along with the raw lines
+  private static final String ECHO_PREFIX = "COMMAND: ";
+
+  /**
+   * @return the command lines of the THOR-Soar sample session, without comments and blank lines
+   */
+  public static List<String> sampleSession() {
+    List<String> lines = new ArrayList<>();
+    try (InputStream in = Corpus.class.getResourceAsStream(SAMPLE_RESOURCE)) {
+      if (in == null) {
+        throw new IllegalStateException("Missing resource " + SAMPLE_RESOURCE);
+      }
+      BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(ECHO_PREFIX)) {
+          line = line.substring(ECHO_PREFIX.length());
+        }
+        if (!line.isBlank() && !line.startsWith("#")) {
+          lines.add(line);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return lines;
+  }
+
+  /**
+   * @return an update of geometry {@code S1.mesh} with {@code vertexCount} random vertices and a
+   *     full transform, formatted the way SVS formats numbers
+   */
+  public static String largeVertexLine(int vertexCount) {
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder("S1 mesh v");
+    for (int i = 0; i < 3 * vertexCount; i++) {
+      sb.append(' ').append(String.format(Locale.ROOT, "%.6g", random.nextGaussian()));
+    }
+    sb.append(" p 1.5 -0.25 0.900999 r 0 0 0.707107 0.707107 s 1 1 1");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,71 @@
+package edu.umich.soar.svsviewer.parsing;
+
+import edu.umich.soar.svsviewer.command.Command;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+  private List<String> session;
+  private String largeVertexLine;
+  // pre-tokenized input, so that only parsing is measured
+  private TokenBuffer[] sessionTokens;
+  private TokenBuffer largeVertexTokens;
+  private LineProcessor lineProcessor;
+  private List<Command> processed;
+
+  @Setup
+  public void setUp() {
+    session = Corpus.sampleSession();
+    largeVertexLine = Corpus.largeVertexLine(1000);
+    sessionTokens = new TokenBuffer[session.size()];
+    for (int i = 0; i < session.size(); i++) {
+      sessionTokens[i] = TokenBuffer.of(Tokenizer.tokenizeCommand(session.get(i)));
+    }
+    largeVertexTokens = TokenBuffer.of(Tokenizer.tokenizeCommand(largeVertexLine));
+    lineProcessor = new LineProcessor(commands -> processed = commands, false);
+  }
+
+  @Benchmark
+  public void parseSession(Blackhole blackhole) throws Parser.ParsingException {
+    for (TokenBuffer tokens : sessionTokens) {
+      blackhole.consume(Parser.parse(tokens));
+    }
+  }
+
+  @Benchmark
+  public List<Command> parseLargeVertexLine() throws Parser.ParsingException {
+    return Parser.parse(largeVertexTokens);
+  }
+
+  /** Tokenizing and parsing, as done for every received line */
+  @Benchmark
+  public void processSession(Blackhole blackhole) {
+    for (String line : session) {
+      lineProcessor.accept(line);
+      blackhole.consume(processed);
+    }
+  }
+
+  @Benchmark
+  public List<Command> processLargeVertexLine() {
+    lineProcessor.accept(largeVertexLine);
+    return processed;
+  }
+}
@@ -0,0 +1,61 @@
+package edu.umich.soar.svsviewer.parsing;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizerBenchmark {
+  private List<String> session;
+  private String largeVertexLine;
+  private final TokenBuffer tokens = new TokenBuffer();
+
+  @Setup
+  public void setUp() {
+    session = Corpus.sampleSession();
+    largeVertexLine = Corpus.largeVertexLine(1000);
+  }
+
+  /** The public API, which creates a String per field */
+  @Benchmark
+  public void tokenizeCommandSession(Blackhole blackhole) {
+    for (String line : session) {
+      blackhole.consume(Tokenizer.tokenizeCommand(line));
+    }
+  }
+
+  /** What {@link LineProcessor} does: scan into a reused buffer */
+  @Benchmark
+  public void tokenizeSession(Blackhole blackhole) {
+    for (String line : session) {
+      Tokenizer.tokenize(line, tokens);
+      blackhole.consume(tokens.size());
+    }
+  }
+
+  @Benchmark
+  public List<String> tokenizeCommandLargeVertexLine() {
+    return Tokenizer.tokenizeCommand(largeVertexLine);
+  }
+
+  @Benchmark
+  public int tokenizeLargeVertexLine() {
+    Tokenizer.tokenize(largeVertexLine, tokens);
+    return tokens.size();
+  }
+}
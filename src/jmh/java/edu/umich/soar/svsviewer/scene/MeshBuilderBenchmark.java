@@ -0,0 +1,61 @@
+package edu.umich.soar.svsviewer.scene;
+
+import edu.umich.soar.svsviewer.math.Vertices;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Convex hull construction, which is what every {@code v} update costs when its vertices are not
+ * cached, and the box shortcut that most updates take instead. Creating the JavaFX {@code
+ * TriangleMesh} from the result is a plain array copy and is left out, so that the benchmark
+ * doesn't need the JavaFX toolkit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MeshBuilderBenchmark {
+  /** 8 is a box, which is most of what SVS sends */
+  @Param({"8", "64", "1024"})
+  public int vertexCount;
+
+  private Vertices vertices;
+  private final Vertices unitCube =
+      Vertices.of(
+          0.5, 0.5, 0.5, 0.5, 0.5, -0.5, 0.5, -0.5, 0.5, 0.5, -0.5, -0.5, -0.5, 0.5, 0.5, -0.5, 0.5,
+          -0.5, -0.5, -0.5, 0.5, -0.5, -0.5, -0.5);
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    double[] coordinates = new double[3 * vertexCount];
+    for (int i = 0; i < coordinates.length; i++) {
+      coordinates[i] = random.nextGaussian();
+    }
+    vertices = Vertices.of(coordinates);
+  }
+
+  @Benchmark
+  public MeshBuilder.MeshData convexHull() {
+    return MeshBuilder.convexHull(vertices);
+  }
+
+  /** The box fast path, to compare with {@code convexHull} at {@code vertexCount=8} */
+  @Benchmark
+  public MeshBuilder.MeshData unitCube() {
+    return MeshBuilder.build(unitCube);
+  }
+}
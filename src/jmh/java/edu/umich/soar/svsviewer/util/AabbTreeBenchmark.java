@@ -0,0 +1,138 @@
+package edu.umich.soar.svsviewer.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Queries and updates of the spatial index for {@code objectCount} boxes of up to 2 units spread
+ * over a 100 unit cube, next to a scan of all boxes, which is what picking or culling would cost
+ * without the index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AabbTreeBenchmark {
+  // rays start at x = -10 and point mostly along +x
+  private static final double ORIGIN_X = -10;
+  private static final double[] DIRECTION = {1, 0.1, 0.1};
+
+  @Param({"1000", "10000"})
+  public int objectCount;
+
+  private AabbTree<Integer> tree;
+  private int[] ids;
+  // min x, y, z, max x, y, z per object
+  private double[] boxes;
+  private final Random random = new Random(42);
+  // a view frustum looking down +x from the origin, 60 units deep
+  private final double[] frustum = {1, -1, 0, 0, 1, 0, -1, 0, 0, 1, 0, 0, 0, 0, 1, 0, -1, 0, 0, 60};
+
+  @Setup
+  public void setUp() {
+    tree = new AabbTree<>(0.1);
+    ids = new int[objectCount];
+    boxes = new double[6 * objectCount];
+    for (int i = 0; i < objectCount; i++) {
+      int b = 6 * i;
+      for (int axis = 0; axis < 3; axis++) {
+        boxes[b + axis] = random.nextDouble() * 100;
+        boxes[b + 3 + axis] = boxes[b + axis] + random.nextDouble() * 2;
+      }
+      ids[i] =
+          tree.insert(
+              i, boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]);
+    }
+  }
+
+  @Benchmark
+  public Integer pick() {
+    return tree.pick(
+        ORIGIN_X,
+        random.nextDouble() * 100,
+        random.nextDouble() * 100,
+        DIRECTION[0],
+        DIRECTION[1],
+        DIRECTION[2],
+        Double.POSITIVE_INFINITY);
+  }
+
+  @Benchmark
+  public Integer pickByScan() {
+    double[] origin = {ORIGIN_X, random.nextDouble() * 100, random.nextDouble() * 100};
+    double best = Double.POSITIVE_INFINITY;
+    Integer nearest = null;
+    for (int i = 0; i < objectCount; i++) {
+      int b = 6 * i;
+      double near = 0;
+      double far = Double.POSITIVE_INFINITY;
+      for (int axis = 0; axis < 3; axis++) {
+        double t1 = (boxes[b + axis] - origin[axis]) / DIRECTION[axis];
+        double t2 = (boxes[b + 3 + axis] - origin[axis]) / DIRECTION[axis];
+        near = Math.max(near, Math.min(t1, t2));
+        far = Math.min(far, Math.max(t1, t2));
+      }
+      if (near <= far && near < best) {
+        best = near;
+        nearest = i;
+      }
+    }
+    return nearest;
+  }
+
+  @Benchmark
+  public void queryRadius(Blackhole blackhole) {
+    tree.queryRadius(
+        random.nextDouble() * 100,
+        random.nextDouble() * 100,
+        random.nextDouble() * 100,
+        5,
+        blackhole::consume);
+  }
+
+  @Benchmark
+  public void queryRadiusByScan(Blackhole blackhole) {
+    double x = random.nextDouble() * 100;
+    double y = random.nextDouble() * 100;
+    double z = random.nextDouble() * 100;
+    for (int i = 0; i < objectCount; i++) {
+      int b = 6 * i;
+      double dx = Math.max(0, Math.max(boxes[b] - x, x - boxes[b + 3]));
+      double dy = Math.max(0, Math.max(boxes[b + 1] - y, y - boxes[b + 4]));
+      double dz = Math.max(0, Math.max(boxes[b + 2] - z, z - boxes[b + 5]));
+      if (dx * dx + dy * dy + dz * dz <= 25) {
+        blackhole.consume(i);
+      }
+    }
+  }
+
+  /** Reports about 7% of all objects, so it is dominated by the output */
+  @Benchmark
+  public void queryFrustum(Blackhole blackhole) {
+    tree.queryFrustum(frustum, blackhole::consume);
+  }
+
+  /** Moves one object to a random place, which always restructures the tree */
+  @Benchmark
+  public boolean update() {
+    int i = random.nextInt(objectCount);
+    double x = random.nextDouble() * 100;
+    double y = random.nextDouble() * 100;
+    double z = random.nextDouble() * 100;
+    return tree.update(ids[i], x, y, z, x + 1, y + 1, z + 1);
+  }
+}
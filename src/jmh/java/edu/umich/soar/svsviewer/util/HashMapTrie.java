@@ -0,0 +1,71 @@
+package edu.umich.soar.svsviewer.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The uncompressed trie that {@link WildcardMap} used to be, with one node and one {@link HashMap}
+ * per key character. Insertion, lookup and the backtracking wildcard search are kept, as baselines
+ * for {@link WildcardMapFootprintBenchmark} and {@link WildcardSearchStressBenchmark}.
+ */
+class HashMapTrie<T> {
+  private final Node<T> root = new Node<>();
+
+  private static class Node<T> {
+    Map<Character, Node<T>> children = new HashMap<>();
+    T value;
+  }
+
+  T put(String key, T value) {
+    Node<T> currentNode = root;
+    for (int i = 0; i < key.length(); i++) {
+      currentNode = currentNode.children.computeIfAbsent(key.charAt(i), c -> new Node<>());
+    }
+    T previousValue = currentNode.value;
+    currentNode.value = value;
+    return previousValue;
+  }
+
+  T get(String key) {
+    Node<T> currentNode = root;
+    for (int i = 0; i < key.length() && currentNode != null; i++) {
+      currentNode = currentNode.children.get(key.charAt(i));
+    }
+    return currentNode == null ? null : currentNode.value;
+  }
+
+  /** May return the same key more than once, and takes exponential time for some patterns */
+  List<WildcardMap.Entry<T>> getWithWildcards(String keyWithWildcards) {
+    List<WildcardMap.Entry<T>> result = new ArrayList<>();
+    search(root, "", 0, keyWithWildcards, result);
+    return result;
+  }
+
+  private void search(
+      Node<T> parent,
+      String currentPath,
+      int index,
+      String key,
+      List<WildcardMap.Entry<T>> results) {
+    if (parent == null) return;
+    if (index == key.length()) {
+      if (parent.value != null) {
+        results.add(new WildcardMap.Entry<>(currentPath, parent.value));
+      }
+      return;
+    }
+    char c = key.charAt(index);
+    if (c == '*') {
+      // consume zero characters
+      search(parent, currentPath, index + 1, key, results);
+      for (Map.Entry<Character, Node<T>> entry : parent.children.entrySet()) {
+        // consume one character
+        search(entry.getValue(), currentPath + entry.getKey(), index, key, results);
+      }
+    } else {
+      search(parent.children.get(c), currentPath + c, index + 1, key, results);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package edu.umich.soar.svsviewer.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WildcardMapBenchmark {
+  // geometry names tend to share a few long prefixes
+  private static final String[] PREFIXES = {"block", "table", "robot-arm-link", "waypoint"};
+
+  @Param({"100", "1000", "10000", "100000"})
+  public int keyCount;
+
+  private WildcardMap<Integer> map;
+  private String[] keys;
+  private int next = 0;
+
+  static String key(int i) {
+    return PREFIXES[i % PREFIXES.length] + i;
+  }
+
+  @Setup
+  public void setUp() {
+    map = new WildcardMap<>();
+    keys = new String[keyCount];
+    for (int i = 0; i < keyCount; i++) {
+      keys[i] = key(i);
+      map.put(keys[i], i);
+    }
+  }
+
+  private String nextKey() {
+    next = (next + 1) % keys.length;
+    return keys[next];
+  }
+
+  @Benchmark
+  public Integer getExisting() {
+    return map.get(nextKey());
+  }
+
+  @Benchmark
+  public Integer getMissing() {
+    return map.get("robot-arm-link-missing");
+  }
+
+  @Benchmark
+  public boolean containsKey() {
+    return map.containsKey(nextKey());
+  }
+
+  /** Matches a single key; the trailing wildcard explores the rest of its subtree */
+  @Benchmark
+  public List<WildcardMap.Entry<Integer>> getWithTrailingWildcard() {
+    return map.getWithWildcards(nextKey() + "*");
+  }
+
+  /** Matches a quarter of the keys */
+  @Benchmark
+  public List<WildcardMap.Entry<Integer>> getWithPrefixWildcard() {
+    return map.getWithWildcardsUncached("table*");
+  }
+
+  /** Has to look at every key, like {@code S1 *} updates and deletes */
+  @Benchmark
+  public List<WildcardMap.Entry<Integer>> getWithLeadingWildcard() {
+    return map.getWithWildcardsUncached("*7");
+  }
+
+  /** The same pattern again without changes to the map, as for a stream of {@code S1 *} updates */
+  @Benchmark
+  public List<WildcardMap.Entry<Integer>> getWithLeadingWildcardCached() {
+    return map.getWithWildcards("*7");
+  }
+
+  /** Like the label update after a camera move, which visits every geometry */
+  @Benchmark
+  public int iterateValues() {
+    int sum = 0;
+    for (Integer value : map.values()) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public void forEachValue(Blackhole blackhole) {
+    map.forEachValue(blackhole::consume);
+  }
+
+  @Benchmark
+  public int iterateKeys() {
+    int length = 0;
+    for (String key : map.keySet()) {
+      length += key.length();
+    }
+    return length;
+  }
+
+  /** Removes about 1/40 of the keys, then puts them back so that every invocation does the same */
+  @Benchmark
+  public Collection<Integer> removeWithWildcardsAndRestore() {
+    Collection<Integer> removed = map.removeWithWildcards("block*2");
+    for (Integer i : removed) {
+      map.put(keys[i], i);
+    }
+    return removed;
+  }
+}
@@ -0,0 +1,109 @@
+package edu.umich.soar.svsviewer.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Memory of {@link WildcardMap} compared to the uncompressed {@link HashMapTrie} it replaced.
+ *
+ * <p>The benchmarks time building a map of {@code keyCount} keys; {@code gc.alloc.rate.norm} is
+ * what that allocates, including garbage such as outgrown hash tables and child arrays.
+ *
+ * <p>{@link #main} measures the heap that the finished maps actually keep alive, by walking their
+ * object graphs with JOL. That includes the key strings that {@code WildcardMap} references as edge
+ * labels (and may keep referencing after their keys were removed), which {@code HashMapTrie}
+ * doesn't hold on to. All keys map to the same value, so values don't count. Run it with {@code
+ * ./gradlew jmhFootprint}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WildcardMapFootprintBenchmark {
+  private static final Object VALUE = new Object();
+  private static final int[] KEY_COUNTS = {100, 10_000, 100_000};
+
+  @Param({"100", "10000", "100000"})
+  public int keyCount;
+
+  private String[] keys;
+
+  @Setup
+  public void setUp() {
+    keys = keys(keyCount);
+  }
+
+  // new strings, as they would come from the parser, so that they are counted with each map
+  private static String[] keys(int keyCount) {
+    String[] keys = new String[keyCount];
+    for (int i = 0; i < keyCount; i++) {
+      keys[i] = new String(WildcardMapBenchmark.key(i));
+    }
+    return keys;
+  }
+
+  @Benchmark
+  public WildcardMap<Object> buildWildcardMap() {
+    return buildWildcardMap(keys);
+  }
+
+  @Benchmark
+  public HashMapTrie<Object> buildHashMapTrie() {
+    return buildHashMapTrie(keys);
+  }
+
+  private static WildcardMap<Object> buildWildcardMap(String[] keys) {
+    WildcardMap<Object> map = new WildcardMap<>();
+    for (String key : keys) {
+      map.put(key, VALUE);
+    }
+    return map;
+  }
+
+  private static HashMapTrie<Object> buildHashMapTrie(String[] keys) {
+    HashMapTrie<Object> map = new HashMapTrie<>();
+    for (String key : keys) {
+      map.put(key, VALUE);
+    }
+    return map;
+  }
+
+  /** Prints the retained heap per key of both maps for each key count */
+  public static void main(String[] args) {
+    System.out.printf(
+        "%8s %22s %22s %28s%n",
+        "keys", "WildcardMap B/key", "HashMapTrie B/key", "WildcardMap, half removed");
+    for (int keyCount : KEY_COUNTS) {
+      WildcardMap<Object> wildcardMap = buildWildcardMap(keys(keyCount));
+      double wildcardMapBytes = retainedBytes(wildcardMap) / (double) keyCount;
+      double hashMapTrieBytes = retainedBytes(buildHashMapTrie(keys(keyCount))) / (double) keyCount;
+      // removed keys can stay reachable through the labels of the remaining ones
+      for (int i = 0; i < keyCount; i += 2) {
+        wildcardMap.remove(WildcardMapBenchmark.key(i));
+      }
+      double halfRemovedBytes = retainedBytes(wildcardMap) / (double) wildcardMap.size();
+      System.out.printf(
+          "%8d %22.1f %22.1f %28.1f%n",
+          keyCount, wildcardMapBytes, hashMapTrieBytes, halfRemovedBytes);
+    }
+  }
+
+  private static long retainedBytes(Object map) {
+    // VALUE is shared by all keys, and is subtracted
+    return GraphLayout.parseInstance(map).totalSize()
+        - GraphLayout.parseInstance(VALUE).totalSize();
+  }
+}
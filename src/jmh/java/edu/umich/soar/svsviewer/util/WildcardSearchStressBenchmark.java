@@ -0,0 +1,71 @@
+package edu.umich.soar.svsviewer.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Patterns with many {@code *}, for which the old backtracking search in {@link HashMapTrie}
+ * explores every way of distributing the key characters between the stars.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WildcardSearchStressBenchmark {
+  @Param({"100"})
+  public int keyCount;
+
+  /**
+   * {@code names} are the geometry names of {@link WildcardMapBenchmark}; {@code repetitive} keys
+   * are 20 {@code a} followed by a number, on which {@code *a} patterns are worst-case
+   */
+  @Param({"names", "repetitive"})
+  public String keys;
+
+  @Param({
+    // matches a few hundred names
+    "*o*o*-*a*-*1*",
+    // matches nothing, but many prefixes are partial matches
+    "*o*o*-*a*-*1*x",
+    "*a*a*a*a*a*a*1",
+    "*a*a*a*a*a*a*x"
+  })
+  public String pattern;
+
+  private WildcardMap<Integer> map;
+  private HashMapTrie<Integer> baseline;
+
+  @Setup
+  public void setUp() {
+    map = new WildcardMap<>();
+    baseline = new HashMapTrie<>();
+    for (int i = 0; i < keyCount; i++) {
+      String key = keys.equals("repetitive") ? "a".repeat(20) + i : WildcardMapBenchmark.key(i);
+      map.put(key, i);
+      baseline.put(key, i);
+    }
+  }
+
+  @Benchmark
+  public List<WildcardMap.Entry<Integer>> wildcardMap() {
+    return map.getWithWildcardsUncached(pattern);
+  }
+
+  @Benchmark
+  public List<WildcardMap.Entry<Integer>> backtrackingBaseline() {
+    return baseline.getWithWildcards(pattern);
+  }
+}
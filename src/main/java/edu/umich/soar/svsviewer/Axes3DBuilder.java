@@ -1,9 +1,8 @@
 package edu.umich.soar.svsviewer;
 
-import edu.umich.soar.svsviewer.util.Labels;
+import edu.umich.soar.svsviewer.scene.LabelProjector;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.util.Pair;
 import org.fxyz3d.geometry.Point3D;
@@ -41,6 +40,9 @@ public class Axes3DBuilder {
   public static final class Axes3D {
     private final Group root;
     private final List<Pair<javafx.geometry.Point3D, Node>> labels;
+    // labels and their points as x, y, z triples, in the form LabelProjector takes them
+    private final Node[] labelNodes;
+    private final double[] labelPoints;
     private boolean visible;
 
     public Axes3D(Group root, List<Pair<javafx.geometry.Point3D, Node>> labels, boolean visible) {
@@ -48,12 +50,23 @@ public class Axes3DBuilder {
       this.labels = labels;
       this.visible = visible;
       //      System.out.println(labels);
+      labelNodes = new Node[labels.size()];
+      labelPoints = new double[3 * labels.size()];
+      for (int i = 0; i < labels.size(); i++) {
+        javafx.geometry.Point3D point = labels.get(i).getKey();
+        labelNodes[i] = labels.get(i).getValue();
+        labelPoints[3 * i] = point.getX();
+        labelPoints[3 * i + 1] = point.getY();
+        labelPoints[3 * i + 2] = point.getZ();
+      }
     }
 
-    public void updateLabelLocations(Pane labelsPane) {
-      for (Pair<javafx.geometry.Point3D, Node> labelPointPair : labels) {
-        Labels.updateLocation(labelsPane, root, labelPointPair.getKey(), labelPointPair.getValue());
+    public void updateLabelLocations(LabelProjector projector) {
+      if (!visible) {
+        // the projector would make culled labels visible again
+        return;
       }
+      projector.project(root, labelPoints, labelNodes, labelNodes.length);
     }
 
     public Node getNode() {
@@ -0,0 +1,94 @@
+package edu.umich.soar.svsviewer;
+
+import edu.umich.soar.svsviewer.command.Command;
+import edu.umich.soar.svsviewer.model.SceneModel;
+import edu.umich.soar.svsviewer.parsing.LineProcessor;
+import edu.umich.soar.svsviewer.server.JournalReplay;
+import edu.umich.soar.svsviewer.server.JournalWriter;
+import edu.umich.soar.svsviewer.server.Server;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs the viewer's ingest pipeline (server or journal replay, tokenizer, parser and scene model)
+ * without JavaFX, so that throughput can be measured and soak tests can run on machines without a
+ * display. Accepts the same options as the viewer (see {@link ViewerOptions}). Commands are applied
+ * to the {@link SceneModel} as soon as they are parsed, and progress is printed every few seconds.
+ */
+public class HeadlessViewer {
+  private static final long REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+  private final SceneModel model = new SceneModel();
+  // only touched from the input thread
+  private long lineCount = 0;
+  private long commandCount = 0;
+  private long startNanos = 0;
+  private long lastReportNanos = 0;
+
+  public static void main(String[] args) {
+    ViewerOptions options;
+    try {
+      options = ViewerOptions.parse(Arrays.asList(args));
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(ViewerOptions.USAGE);
+      System.exit(2);
+      return;
+    }
+
+    HeadlessViewer viewer = new HeadlessViewer();
+    Consumer<String> inputProcessor = new LineProcessor(viewer::apply, false);
+    if (options.replayPath() != null) {
+      new JournalReplay(options.replayPath(), options.replaySpeed(), inputProcessor).run();
+      viewer.report(System.nanoTime());
+      return;
+    }
+
+    JournalWriter journal = null;
+    if (options.recordPath() != null) {
+      try {
+        journal = new JournalWriter(options.recordPath());
+      } catch (IOException e) {
+        System.err.println("Could not record to " + options.recordPath() + ": " + e.getMessage());
+        System.exit(1);
+      }
+    }
+    new Server(options.port(), inputProcessor, System.out::println, journal).run();
+  }
+
+  private void apply(List<Command> commands) {
+    long now = System.nanoTime();
+    if (lineCount == 0) {
+      startNanos = now;
+      lastReportNanos = now;
+    }
+    for (Command command : commands) {
+      try {
+        command.apply(model);
+      } catch (RuntimeException e) {
+        System.err.println("Failed to apply " + command);
+        e.printStackTrace();
+      }
+    }
+    lineCount++;
+    commandCount += commands.size();
+    if (now - lastReportNanos >= REPORT_INTERVAL_NANOS) {
+      report(now);
+    }
+  }
+
+  private void report(long now) {
+    lastReportNanos = now;
+    double seconds = (now - startNanos) / 1_000_000_000d;
+    System.out.printf(
+        "%d lines, %d commands in %.1f s (%.0f lines/s); %d scenes, %d geometries%n",
+        lineCount,
+        commandCount,
+        seconds,
+        seconds > 0 ? lineCount / seconds : 0,
+        model.getSceneCount(),
+        model.getGeometryCount());
+  }
+}
@@ -1,16 +1,20 @@
 package edu.umich.soar.svsviewer;
 
-import edu.umich.soar.svsviewer.command.Command;
-import edu.umich.soar.svsviewer.parsing.Parser;
-import edu.umich.soar.svsviewer.parsing.Tokenizer;
+import edu.umich.soar.svsviewer.command.CommandQueue;
+import edu.umich.soar.svsviewer.parsing.LineProcessor;
 import edu.umich.soar.svsviewer.scene.GeometryManager;
+import edu.umich.soar.svsviewer.scene.MeshCache;
+import edu.umich.soar.svsviewer.server.JournalReplay;
+import edu.umich.soar.svsviewer.server.JournalWriter;
 import edu.umich.soar.svsviewer.server.Server;
+import edu.umich.soar.svsviewer.util.TimingStats;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.function.Consumer;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
@@ -48,6 +52,12 @@ public class SceneController {
 
   private GeometryManager geometryManager;
 
+  private final CommandQueue commandQueue = new CommandQueue();
+  // printed every few seconds while commands come in, rather than for every frame
+  private static final long STATS_REPORT_INTERVAL_NANOS = 5_000_000_000L;
+  private final TimingStats commandStats = new TimingStats("Command application");
+  private long lastStatsReportNanos = 0;
+
   double anchorX;
   double anchorY;
   double anchorAngleX;
@@ -72,7 +82,7 @@ public class SceneController {
   @FXML
   public void initialize() {
     this.geometryManager =
-        new GeometryManager(preferences, rootPane, shapeGroup, this::showMessage);
+        new GeometryManager(preferences, rootPane, viewerScene, shapeGroup, this::showMessage);
 
     // TODO: would prefer to bind in the FXML file, but I couldn't get that to work.
     viewerScene.heightProperty().bind(rootPane.heightProperty());
@@ -175,33 +185,7 @@ public class SceneController {
 
     initMouseControls(shapeGroup, viewerScene);
 
-    rerenderSceneOnChange(rootGroup.boundsInParentProperty());
-
-    Consumer<String> inputProcessor =
-        (String line) -> {
-          List<String> tokens = Tokenizer.tokenizeCommand(line);
-          if (tokens.isEmpty()) {
-            System.err.println("No tokens found in line: " + line);
-            return;
-          }
-          System.out.println("COMMAND: " + line);
-          List<Command> parsed;
-          try {
-            parsed = Parser.parse(tokens);
-          } catch (Parser.ParsingException e) {
-            // TODO: anything better we can do here?
-            System.err.println("Ignoring unparseable line: " + line);
-            System.err.println(e.getMessage());
-            return;
-          }
-          for (Command command : parsed) {
-            // we're on the server thread, but the UI must be updated on the main thread; runLater()
-            // takes care of that
-            Platform.runLater(() -> command.interpret(geometryManager, this));
-          }
-        };
-
-    initServer(inputProcessor);
+    initCommandApplication();
 
     //    TODO: factor out or put in constants or something
     AmbientLight globalAmbientLight = new AmbientLight(Color.color(.4, .4, .4));
@@ -217,6 +201,73 @@ public class SceneController {
     initMessageStack(messageStack);
   }
 
+  /** Start receiving commands, either from SGEL clients or from a recorded journal. */
+  public void start(ViewerOptions options) {
+    geometryManager.setWireframeIdleTimeout(Duration.seconds(options.wireframeIdleSeconds()));
+    geometryManager.setStaticBatching(options.staticBatchFrames());
+    // lines are processed on the server (or replay) thread, but the UI must be updated on the main
+    // thread; the command queue is drained there once per frame
+    MeshCache meshCache = geometryManager.getMeshCache();
+    Consumer<String> inputProcessor =
+        new LineProcessor(
+            commands -> {
+              commands.forEach(command -> command.prepare(meshCache));
+              commandQueue.addAll(commands);
+            });
+    if (options.replayPath() != null) {
+      startReplay(options, inputProcessor);
+    } else {
+      initServer(options, inputProcessor);
+    }
+  }
+
+  private void startReplay(ViewerOptions options, Consumer<String> inputProcessor) {
+    JournalReplay replay =
+        new JournalReplay(options.replayPath(), options.replaySpeed(), inputProcessor);
+    showMessage("Replaying " + options.replayPath());
+    Thread th =
+        new Thread(
+            () -> {
+              replay.run();
+              Platform.runLater(() -> showMessage("Finished replaying " + options.replayPath()));
+            });
+    th.setDaemon(true);
+    th.start();
+  }
+
+  /** Apply all commands received since the last frame, once per frame, on the FX thread. */
+  private void initCommandApplication() {
+    new AnimationTimer() {
+      @Override
+      public void handle(long now) {
+        CommandQueue.DrainStats stats =
+            commandQueue.drain(command -> command.interpret(geometryManager, SceneController.this));
+        geometryManager.onFrame();
+        if (stats.commandCount() > 0) {
+          commandStats.record(stats.appliedCount(), stats.elapsedNanos());
+        }
+        if (now - lastStatsReportNanos >= STATS_REPORT_INTERVAL_NANOS) {
+          lastStatsReportNanos = now;
+          reportStats();
+        }
+      }
+    }.start();
+  }
+
+  /** Prints and resets the per-frame statistics that recorded anything since the last report */
+  private void reportStats() {
+    for (TimingStats stats :
+        List.of(
+            commandStats,
+            geometryManager.getGeometryLabelStats(),
+            geometryManager.getCameraLabelStats())) {
+      if (stats.getRuns() > 0) {
+        System.out.println(stats);
+        stats.reset();
+      }
+    }
+  }
+
   private void rerenderSceneOnChange(ObservableValue<?> observable) {
     observable.addListener((obs, oldValue, newValue) -> geometryManager.requestSceneRerender());
   }
@@ -256,6 +307,10 @@ public class SceneController {
     yRotate.angleProperty().bind(angleY);
 
     group.getTransforms().addAll(xRotate, yRotate);
+    // rotating the whole scene moves every label, just like moving the camera
+    for (Rotate r : List.of(xRotate, yRotate)) {
+      r.setOnTransformChanged(value -> geometryManager.requestSceneRerender());
+    }
 
     scene.setOnMousePressed(
         event -> {
@@ -273,15 +328,16 @@ public class SceneController {
         });
   }
 
-  private void initServer(Consumer<String> inputProcessor) {
+  private void initServer(ViewerOptions options, Consumer<String> inputProcessor) {
+    int port = options.port();
     // While the server is not connected, show a simple status/instruction message
     // at the center of the screen
     Text welcomeInstructionsText =
-        new Text("Waiting for connection at port 12122.\nConnect from Soar with:");
+        new Text("Waiting for connection at port " + port + ".\nConnect from Soar with:");
     welcomeInstructionsText.setFont(new Font("Helvetica", 30));
     welcomeInstructionsText.setTextAlignment(TextAlignment.CENTER);
     welcomeInstructionsText.setLineSpacing(6);
-    Text connectionInstructionText = new Text("svs connect_viewer 12122");
+    Text connectionInstructionText = new Text("svs connect_viewer " + port);
     connectionInstructionText.setFont(new Font("Courier New", 30));
     connectionInstructionText.setTextAlignment(TextAlignment.CENTER);
 
@@ -298,7 +354,7 @@ public class SceneController {
             rootPane.heightProperty().subtract(welcomeInstructionsBox.heightProperty()).divide(2));
 
     Label disconnectedWarning =
-        new Label("No client connected. Connect from Soar with `svs connect_viewer 12122`.");
+        new Label("No client connected. Connect from Soar with `svs connect_viewer " + port + "`.");
     rootPane.getChildren().add(disconnectedWarning);
     disconnectedWarning.getStyleClass().add("disconnectedWarningLabel");
     // Place in lower-left corner
@@ -307,23 +363,29 @@ public class SceneController {
         .layoutYProperty()
         .bind(rootPane.heightProperty().subtract(disconnectedWarning.heightProperty()));
 
-    server = new Server(12122, inputProcessor, this::showMessage);
-    server
-        .clientConnectedProperty()
-        .addListener(
-            (observer, oldVal, newVal) -> {
-              // hide after the first time the server connects
-              if (newVal) {
-                Platform.runLater(() -> welcomeInstructionsBox.setVisible(false));
-              }
-            });
-    server
-        .clientConnectedProperty()
-        .addListener(
-            (observer, oldVal, newVal) -> {
-              // show when not connected
-              Platform.runLater(() -> disconnectedWarning.setVisible(!newVal));
-            });
+    JournalWriter journal = null;
+    if (options.recordPath() != null) {
+      try {
+        journal = new JournalWriter(options.recordPath());
+        showMessage("Recording to " + options.recordPath());
+      } catch (IOException e) {
+        showMessage("Could not record to " + options.recordPath() + ": " + e.getMessage());
+      }
+    }
+    // the server runs on a different thread, so messages need to be directed back to main thread
+    server =
+        new Server(port, inputProcessor, s -> Platform.runLater(() -> showMessage(s)), journal);
+    server.setConnectionListener(
+        connected ->
+            Platform.runLater(
+                () -> {
+                  // hide after the first time the server connects
+                  if (connected) {
+                    welcomeInstructionsBox.setVisible(false);
+                  }
+                  // show when not connected
+                  disconnectedWarning.setVisible(!connected);
+                }));
     Thread th = new Thread(server);
     th.setDaemon(true);
     th.start();
@@ -1,6 +1,7 @@
 package edu.umich.soar.svsviewer;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.NamedArg;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -13,15 +14,28 @@ public class SvsViewerApplication extends Application {
 
   @Override
   public void start(Stage primaryStage) throws IOException {
+    ViewerOptions options;
+    try {
+      options = ViewerOptions.parse(getParameters().getRaw());
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(ViewerOptions.USAGE);
+      Platform.exit();
+      return;
+    }
+
     FXMLLoader fxmlLoader =
         new FXMLLoader(SvsViewerApplication.class.getResource("svs-viewer.fxml"));
     Scene scene = new Scene(fxmlLoader.load());
     primaryStage.setTitle("SVS Viewer");
     primaryStage.setScene(scene);
     primaryStage.show();
+
+    SceneController controller = fxmlLoader.getController();
+    controller.start(options);
   }
 
   public static void main(String[] args) {
-    launch();
+    launch(args);
   }
 }
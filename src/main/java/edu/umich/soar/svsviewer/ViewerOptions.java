@@ -0,0 +1,129 @@
+package edu.umich.soar.svsviewer;
+
+import edu.umich.soar.svsviewer.server.JournalReplay;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Command line options of the viewer.
+ *
+ * @param port port to listen on for SGEL clients
+ * @param recordPath if not null, every received line is recorded to this journal file
+ * @param replayPath if not null, commands are read from this journal instead of from clients
+ * @param replaySpeed how many times faster than recorded to replay; {@link JournalReplay#MAX_SPEED}
+ *     for as fast as possible
+ * @param wireframeIdleSeconds how long to keep hidden wireframes in fill-only mode before
+ *     discarding them
+ * @param staticBatchFrames if positive, geometries that stay unchanged for this many frames are
+ *     merged into one mesh per scene and material
+ */
+public record ViewerOptions(
+    int port,
+    Path recordPath,
+    Path replayPath,
+    double replaySpeed,
+    double wireframeIdleSeconds,
+    int staticBatchFrames) {
+  public static final int DEFAULT_PORT = 12122;
+  public static final double DEFAULT_WIREFRAME_IDLE_SECONDS = 30;
+
+  public static final String USAGE =
+      """
+      Options:
+        --port <port>            port to listen on for SGEL clients (default: 12122)
+        --record <file>          record every received line to a journal file
+        --replay <file>          replay a recorded journal instead of listening for clients
+        --replay-speed <speed>   replay speed multiplier, or 'max' (default: 1)
+        --wireframe-idle <secs>  discard hidden wireframes after this long in fill-only mode
+                                 (default: 30)
+        --batch-static <frames>  merge geometries that stay unchanged for this many frames into
+                                 one mesh per scene and color (default: 0, off)""";
+
+  public static ViewerOptions defaults() {
+    return new ViewerOptions(DEFAULT_PORT, null, null, 1, DEFAULT_WIREFRAME_IDLE_SECONDS, 0);
+  }
+
+  /**
+   * @throws IllegalArgumentException if the arguments are not valid
+   */
+  public static ViewerOptions parse(List<String> args) {
+    int port = DEFAULT_PORT;
+    Path recordPath = null;
+    Path replayPath = null;
+    double replaySpeed = 1;
+    double wireframeIdleSeconds = DEFAULT_WIREFRAME_IDLE_SECONDS;
+    int staticBatchFrames = 0;
+    for (int i = 0; i < args.size(); i++) {
+      String option = args.get(i);
+      if (i + 1 == args.size()) {
+        throw new IllegalArgumentException("Missing value for option " + option);
+      }
+      String value = args.get(++i);
+      switch (option) {
+        case "--port" -> port = parsePort(value);
+        case "--record" -> recordPath = Path.of(value);
+        case "--replay" -> replayPath = Path.of(value);
+        case "--replay-speed" -> replaySpeed = parseSpeed(value);
+        case "--wireframe-idle" -> wireframeIdleSeconds = parseSeconds(value);
+        case "--batch-static" -> staticBatchFrames = parseFrames(value);
+        default -> throw new IllegalArgumentException("Unknown option " + option);
+      }
+    }
+    if (recordPath != null && replayPath != null) {
+      throw new IllegalArgumentException("Cannot record while replaying");
+    }
+    return new ViewerOptions(
+        port, recordPath, replayPath, replaySpeed, wireframeIdleSeconds, staticBatchFrames);
+  }
+
+  private static int parsePort(String value) {
+    try {
+      int port = Integer.parseInt(value);
+      if (port >= 0 && port <= 65535) {
+        return port;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid port " + value);
+  }
+
+  private static double parseSpeed(String value) {
+    if (value.equals("max")) {
+      return JournalReplay.MAX_SPEED;
+    }
+    try {
+      double speed = Double.parseDouble(value);
+      if (speed > 0) {
+        return speed;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid replay speed " + value);
+  }
+
+  private static double parseSeconds(String value) {
+    try {
+      double seconds = Double.parseDouble(value);
+      if (seconds >= 0) {
+        return seconds;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid number of seconds " + value);
+  }
+
+  private static int parseFrames(String value) {
+    try {
+      int frames = Integer.parseInt(value);
+      if (frames >= 0) {
+        return frames;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid number of frames " + value);
+  }
+}
@@ -1,8 +1,24 @@
 package edu.umich.soar.svsviewer.command;
 
 import edu.umich.soar.svsviewer.SceneController;
+import edu.umich.soar.svsviewer.model.SceneModel;
 import edu.umich.soar.svsviewer.scene.GeometryManager;
+import edu.umich.soar.svsviewer.scene.MeshCache;
 
 public interface Command {
+  /**
+   * Start expensive work that doesn't need the scene, such as building meshes. Called on the input
+   * thread as soon as the command is parsed, so that the results are ready (or at least underway)
+   * by the time the FX thread interprets the command.
+   */
+  default void prepare(MeshCache meshCache) {}
+
+  /**
+   * Update the display-independent scene model, which the headless runner uses instead of the view;
+   * must not touch JavaFX.
+   */
+  void apply(SceneModel model);
+
+  /** Update the JavaFX view; runs on the FX thread. */
   void interpret(GeometryManager geoManager, SceneController sceneController);
 }
@@ -0,0 +1,63 @@
+package edu.umich.soar.svsviewer.command;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges redundant geometry updates within a batch of commands. Soar re-sends position, rotation
+ * and scale for the same geometry many times per second; when several of those updates arrive
+ * within one frame, only their combined effect needs to be applied.
+ *
+ * <p>Only updates naming a single geometry (no {@code *} in the scene or geometry pattern) are
+ * merged, and only with other such updates. Any other command (creation, deletion, wildcard
+ * updates, etc.) ends the merge window, so the effective order of everything else is unchanged.
+ */
+public class CommandCoalescer {
+
+  private record GeometryKey(String sceneName, String geometryName) {}
+
+  /**
+   * @return commands with the same effect as applying {@code commands} in order, where each
+   *     geometry receives at most one update between any two non-update commands
+   */
+  public static List<Command> coalesce(List<Command> commands) {
+    // index into result of the latest pending update for each geometry
+    Map<GeometryKey, Integer> latestUpdates = new HashMap<>();
+    List<Command> result = new ArrayList<>(commands.size());
+    int mergedCount = 0;
+    for (Command command : commands) {
+      if (command instanceof UpdateGeometryCommand update && namesSingleGeometry(update)) {
+        GeometryKey key =
+            new GeometryKey(
+                update.sceneMatcher().namePattern(), update.geometryMatcher().namePattern());
+        Integer previousIndex = latestUpdates.put(key, result.size());
+        if (previousIndex != null) {
+          // the merged update moves to the later position, so it sees everything that the later
+          // update would have seen
+          UpdateGeometryCommand previous = (UpdateGeometryCommand) result.get(previousIndex);
+          result.set(previousIndex, null);
+          command = previous.mergedWith(update);
+          mergedCount++;
+        }
+      } else {
+        latestUpdates.clear();
+      }
+      result.add(command);
+    }
+    if (mergedCount > 0) {
+      result.removeIf(c -> c == null);
+    }
+    return result;
+  }
+
+  private static boolean namesSingleGeometry(UpdateGeometryCommand update) {
+    return isSingleName(update.sceneMatcher()) && isSingleName(update.geometryMatcher());
+  }
+
+  private static boolean isSingleName(NameMatcher matcher) {
+    return matcher.matchType() == NameMatcher.NameMatchType.EXACT
+        || matcher.namePattern().indexOf('*') < 0;
+  }
+}
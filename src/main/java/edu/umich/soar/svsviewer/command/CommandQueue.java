@@ -0,0 +1,70 @@
+package edu.umich.soar.svsviewer.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hands parsed commands from the input thread(s) to the JavaFX Application Thread. Producers add
+ * commands as they are parsed; the FX thread drains everything that has arrived once per pulse and
+ * applies it as a single batch, instead of receiving one {@code Platform.runLater} per command.
+ * Redundant geometry updates within a batch are merged by {@link CommandCoalescer} first.
+ */
+public class CommandQueue {
+  // Bound the work done in a single pulse so that a producer that is faster than the FX thread
+  // (e.g. a replay at maximum speed) can't keep us from ever finishing a frame.
+  private static final int MAX_COMMANDS_PER_DRAIN = 50_000;
+
+  private final ConcurrentLinkedQueue<Command> pending = new ConcurrentLinkedQueue<>();
+  // reused between drains; only touched by the draining thread
+  private final List<Command> batch = new ArrayList<>();
+
+  /**
+   * @param commandCount number of commands received in the batch
+   * @param appliedCount number of commands actually applied after merging redundant updates
+   * @param elapsedNanos time taken to apply the whole batch
+   */
+  public record DrainStats(int commandCount, int appliedCount, long elapsedNanos) {
+    public double elapsedMillis() {
+      return elapsedNanos / 1_000_000d;
+    }
+  }
+
+  /** May be called from any thread. Commands are applied in the order they were added. */
+  public void addAll(List<Command> commands) {
+    pending.addAll(commands);
+  }
+
+  public boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  /**
+   * Apply all pending commands, in order. Intended to be called once per frame on the FX thread. A
+   * command that throws is reported and skipped so that it doesn't take the rest of the batch down
+   * with it.
+   */
+  public DrainStats drain(Consumer<Command> applier) {
+    long start = System.nanoTime();
+    Command received;
+    while (batch.size() < MAX_COMMANDS_PER_DRAIN && (received = pending.poll()) != null) {
+      batch.add(received);
+    }
+    int count = batch.size();
+    if (count == 0) {
+      return new DrainStats(0, 0, System.nanoTime() - start);
+    }
+    List<Command> coalesced = CommandCoalescer.coalesce(batch);
+    batch.clear();
+    for (Command command : coalesced) {
+      try {
+        applier.accept(command);
+      } catch (RuntimeException e) {
+        System.err.println("Failed to apply command: " + command);
+        e.printStackTrace();
+      }
+    }
+    return new DrainStats(count, coalesced.size(), System.nanoTime() - start);
+  }
+}
@@ -1,9 +1,15 @@
 package edu.umich.soar.svsviewer.command;
 
 import edu.umich.soar.svsviewer.SceneController;
+import edu.umich.soar.svsviewer.model.SceneModel;
 import edu.umich.soar.svsviewer.scene.GeometryManager;
 
 public record DeleteSceneCommand(NameMatcher sceneMatcher) implements Command {
+  @Override
+  public void apply(SceneModel model) {
+    model.deleteScene(sceneMatcher);
+  }
+
   @Override
   public void interpret(GeometryManager geoManager, SceneController sceneController) {
     geoManager.deleteScene(sceneMatcher);
@@ -1,6 +1,7 @@
 package edu.umich.soar.svsviewer.command;
 
 import edu.umich.soar.svsviewer.SceneController;
+import edu.umich.soar.svsviewer.model.SceneModel;
 import edu.umich.soar.svsviewer.scene.GeometryManager;
 
 import java.util.EnumMap;
@@ -16,6 +17,11 @@ public record LayerCommand(int layerNumber, EnumMap<LayerOption, Integer> option
     WIREFRAME
   }
 
+  @Override
+  public void apply(SceneModel model) {
+    // layers only affect how the view draws scenes
+  }
+
   @Override
   public void interpret(GeometryManager geoManager, SceneController sceneController) {
     System.out.println("TODO: interpret " + getClass().getName());
@@ -1,9 +1,15 @@
 package edu.umich.soar.svsviewer.command;
 
 import edu.umich.soar.svsviewer.SceneController;
+import edu.umich.soar.svsviewer.model.SceneModel;
 import edu.umich.soar.svsviewer.scene.GeometryManager;
 
 public record SaveCommand(String path) implements Command {
+  @Override
+  public void apply(SceneModel model) {
+    // screenshots are taken of the view
+  }
+
   //  TODO: move code from SceneController to here
   @Override
   public void interpret(GeometryManager geoManager, SceneController sceneController) {
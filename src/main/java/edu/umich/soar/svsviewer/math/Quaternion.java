@@ -0,0 +1,6 @@
+package edu.umich.soar.svsviewer.math;
+
+/** A rotation quaternion, in SVS order: {@code x y z w}. */
+public record Quaternion(double x, double y, double z, double w) {
+  public static final Quaternion IDENTITY = new Quaternion(0, 0, 0, 1);
+}
@@ -0,0 +1,4 @@
+package edu.umich.soar.svsviewer.math;
+
+/** A color with components in [0, 1]. */
+public record Rgb(double red, double green, double blue) {}
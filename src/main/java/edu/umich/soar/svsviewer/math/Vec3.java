@@ -0,0 +1,4 @@
+package edu.umich.soar.svsviewer.math;
+
+/** A 3D vector, used for positions and scales. */
+public record Vec3(double x, double y, double z) {}
@@ -0,0 +1,84 @@
+package edu.umich.soar.svsviewer.math;
+
+import java.util.Arrays;
+
+/**
+ * An immutable list of 3D points, stored flat as {@code x0 y0 z0 x1 y1 z1 ...} so that it can be
+ * handed to mesh-building code without boxing each coordinate. Equality is by content.
+ */
+public final class Vertices {
+  private final double[] coordinates;
+  private int hash;
+
+  /**
+   * @param coordinates flattened x/y/z coordinates; ownership passes to this object, so the caller
+   *     must not modify the array afterward
+   */
+  public Vertices(double[] coordinates) {
+    if (coordinates.length % 3 != 0) {
+      throw new IllegalArgumentException(
+          "Number of coordinates must be a multiple of 3; got " + coordinates.length);
+    }
+    this.coordinates = coordinates;
+  }
+
+  public static Vertices of(double... coordinates) {
+    return new Vertices(coordinates.clone());
+  }
+
+  /**
+   * @return the number of points
+   */
+  public int count() {
+    return coordinates.length / 3;
+  }
+
+  public double x(int point) {
+    return coordinates[point * 3];
+  }
+
+  public double y(int point) {
+    return coordinates[point * 3 + 1];
+  }
+
+  public double z(int point) {
+    return coordinates[point * 3 + 2];
+  }
+
+  /**
+   * @return a copy of the flattened coordinates
+   */
+  public double[] toArray() {
+    return coordinates.clone();
+  }
+
+  /** Copy the flattened coordinates into {@code destination}, which must be long enough. */
+  public void copyTo(double[] destination) {
+    System.arraycopy(coordinates, 0, destination, 0, coordinates.length);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    return o instanceof Vertices other
+        && hashCode() == other.hashCode()
+        && Arrays.equals(coordinates, other.coordinates);
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = Arrays.hashCode(coordinates);
+      hash = h;
+    }
+    return h;
+  }
+
+  @Override
+  public String toString() {
+    return "Vertices" + Arrays.toString(coordinates);
+  }
+}
@@ -0,0 +1,118 @@
+package edu.umich.soar.svsviewer.model;
+
+import edu.umich.soar.svsviewer.math.Quaternion;
+import edu.umich.soar.svsviewer.math.Rgb;
+import edu.umich.soar.svsviewer.math.Vec3;
+import edu.umich.soar.svsviewer.math.Vertices;
+
+/**
+ * Display-independent state of one geometry: its transform, shape and color. A geometry has at most
+ * one shape; setting a new shape replaces the old one and resets the color to the default.
+ */
+public class GeometryState {
+  public static final Vec3 ORIGIN = new Vec3(0d, 0d, 0d);
+  public static final Vec3 UNIT_SCALE = new Vec3(1d, 1d, 1d);
+
+  private final String name;
+  private Vec3 position = ORIGIN;
+  private Quaternion rotation = Quaternion.IDENTITY;
+  private Vec3 scale = UNIT_SCALE;
+  // null means the default material
+  private Rgb color = null;
+  // at most one of these is set
+  private Vertices vertices = null;
+  private Double radius = null;
+  private String text = null;
+
+  public GeometryState(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Vec3 getPosition() {
+    return position;
+  }
+
+  public void setPosition(Vec3 position) {
+    this.position = position;
+  }
+
+  public Quaternion getRotation() {
+    return rotation;
+  }
+
+  public void setRotation(Quaternion rotation) {
+    this.rotation = rotation;
+  }
+
+  public Vec3 getScale() {
+    return scale;
+  }
+
+  public void setScale(Vec3 scale) {
+    this.scale = scale;
+  }
+
+  public Rgb getColor() {
+    return color;
+  }
+
+  public void setColor(Rgb color) {
+    this.color = color;
+  }
+
+  /**
+   * @return the vertices of the geometry's convex hull, or null if it is not a polyhedron
+   */
+  public Vertices getVertices() {
+    return vertices;
+  }
+
+  /**
+   * @return the radius of the geometry, or null if it is not a sphere
+   */
+  public Double getRadius() {
+    return radius;
+  }
+
+  /**
+   * @return the geometry's text, or null if it is not text
+   */
+  public String getText() {
+    return text;
+  }
+
+  public boolean hasShape() {
+    return vertices != null || radius != null || text != null;
+  }
+
+  public void setVertices(Vertices vertices) {
+    clearShape();
+    this.vertices = vertices;
+  }
+
+  public void setRadius(double radius) {
+    clearShape();
+    this.radius = radius;
+  }
+
+  public void setText(String text) {
+    clearShape();
+    this.text = text;
+  }
+
+  private void clearShape() {
+    vertices = null;
+    radius = null;
+    text = null;
+    color = null;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
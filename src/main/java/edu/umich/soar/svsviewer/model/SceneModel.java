@@ -0,0 +1,133 @@
+package edu.umich.soar.svsviewer.model;
+
+import edu.umich.soar.svsviewer.command.NameMatcher;
+import edu.umich.soar.svsviewer.util.WildcardMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Display-independent state of all scenes and geometries received from SGEL clients. Commands are
+ * applied to it with {@link edu.umich.soar.svsviewer.command.Command#apply(SceneModel)}, so the
+ * whole ingest pipeline can run without JavaFX (see {@link
+ * edu.umich.soar.svsviewer.HeadlessViewer}). The JavaFX view keeps its own state in {@link
+ * edu.umich.soar.svsviewer.scene.GeometryManager}.
+ *
+ * <p>Not thread-safe; apply all commands from one thread.
+ */
+public class SceneModel {
+  private final WildcardMap<SceneState> scenes = new WildcardMap<>();
+
+  /**
+   * @return true if a new scene was created
+   */
+  public boolean createSceneIfNotExists(String sceneName) {
+    if (scenes.containsKey(sceneName)) {
+      return false;
+    }
+    scenes.put(sceneName, new SceneState(sceneName));
+    return true;
+  }
+
+  public SceneState getScene(String sceneName) {
+    return scenes.get(sceneName);
+  }
+
+  /**
+   * @return a live view of all scenes
+   */
+  public Collection<SceneState> getScenes() {
+    return scenes.values();
+  }
+
+  /**
+   * @return the removed scenes
+   */
+  public Collection<SceneState> deleteScene(NameMatcher sceneMatcher) {
+    return switch (sceneMatcher.matchType()) {
+      case EXACT -> {
+        SceneState s = scenes.remove(sceneMatcher.namePattern());
+        yield s != null ? List.of(s) : Collections.emptyList();
+      }
+      case WILDCARD -> scenes.removeWithWildcards(sceneMatcher.namePattern());
+    };
+  }
+
+  /**
+   * Adds a geometry to every matching scene that doesn't have one of the same name yet.
+   *
+   * @return the added geometries
+   */
+  public List<GeometryState> addGeometry(NameMatcher sceneMatcher, String geometryName) {
+    List<GeometryState> added = new ArrayList<>();
+    for (SceneState scene : findScenes(sceneMatcher)) {
+      if (!scene.geometries().containsKey(geometryName)) {
+        GeometryState geometry = new GeometryState(geometryName);
+        scene.geometries().put(geometryName, geometry);
+        added.add(geometry);
+      }
+    }
+    return added;
+  }
+
+  /**
+   * @return the removed geometries
+   */
+  public List<GeometryState> deleteGeometry(NameMatcher sceneMatcher, NameMatcher geometryMatcher) {
+    List<GeometryState> removed = new ArrayList<>();
+    for (SceneState scene : findScenes(sceneMatcher)) {
+      switch (geometryMatcher.matchType()) {
+        case EXACT -> {
+          GeometryState geometry = scene.geometries().remove(geometryMatcher.namePattern());
+          if (geometry != null) {
+            removed.add(geometry);
+          }
+        }
+        case WILDCARD ->
+            removed.addAll(scene.geometries().removeWithWildcards(geometryMatcher.namePattern()));
+      }
+    }
+    return removed;
+  }
+
+  public List<GeometryState> findGeometries(NameMatcher sceneMatcher, NameMatcher geometryMatcher) {
+    List<GeometryState> matched = new ArrayList<>();
+    for (SceneState scene : findScenes(sceneMatcher)) {
+      switch (geometryMatcher.matchType()) {
+        case EXACT -> {
+          GeometryState geometry = scene.geometries().get(geometryMatcher.namePattern());
+          if (geometry != null) {
+            matched.add(geometry);
+          }
+        }
+        case WILDCARD ->
+            matched.addAll(
+                scene.geometries().getValuesWithWildcards(geometryMatcher.namePattern()));
+      }
+    }
+    return matched;
+  }
+
+  private List<SceneState> findScenes(NameMatcher sceneMatcher) {
+    return switch (sceneMatcher.matchType()) {
+      case EXACT -> {
+        SceneState scene = scenes.get(sceneMatcher.namePattern());
+        yield scene != null ? List.of(scene) : Collections.emptyList();
+      }
+      case WILDCARD -> scenes.getValuesWithWildcards(sceneMatcher.namePattern());
+    };
+  }
+
+  public int getSceneCount() {
+    return scenes.size();
+  }
+
+  public int getGeometryCount() {
+    int count = 0;
+    for (SceneState scene : scenes.values()) {
+      count += scene.geometries().size();
+    }
+    return count;
+  }
+}
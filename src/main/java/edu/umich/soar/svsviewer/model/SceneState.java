@@ -0,0 +1,9 @@
+package edu.umich.soar.svsviewer.model;
+
+import edu.umich.soar.svsviewer.util.WildcardMap;
+
+public record SceneState(String name, WildcardMap<GeometryState> geometries) {
+  public SceneState(String name) {
+    this(name, new WildcardMap<>());
+  }
+}
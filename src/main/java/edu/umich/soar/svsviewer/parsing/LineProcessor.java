@@ -0,0 +1,51 @@
+package edu.umich.soar.svsviewer.parsing;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import edu.umich.soar.svsviewer.command.Command;
+
+/**
+ * Tokenizes and parses lines of SGEL and passes the resulting commands on. Tokens are scanned into
+ * a {@link TokenBuffer} that is reused from line to line, so an instance must only be fed from one
+ * thread; create one per input source.
+ */
+public class LineProcessor implements Consumer<String> {
+  private final TokenBuffer tokens = new TokenBuffer();
+  private final Consumer<List<Command>> commandSink;
+  private final boolean echoCommands;
+
+  public LineProcessor(Consumer<List<Command>> commandSink) {
+    this(commandSink, true);
+  }
+
+  /**
+   * @param echoCommands whether to print every line; printing can easily cost more than processing
+   */
+  public LineProcessor(Consumer<List<Command>> commandSink, boolean echoCommands) {
+    this.commandSink = commandSink;
+    this.echoCommands = echoCommands;
+  }
+
+  @Override
+  public void accept(String line) {
+    Tokenizer.tokenize(line, tokens);
+    if (tokens.isEmpty()) {
+      System.err.println("No tokens found in line: " + line);
+      return;
+    }
+    if (echoCommands) {
+      System.out.println("COMMAND: " + line);
+    }
+    List<Command> parsed;
+    try {
+      parsed = Parser.parse(tokens);
+    } catch (Parser.ParsingException e) {
+      // TODO: anything better we can do here?
+      System.err.println("Ignoring unparseable line: " + line);
+      System.err.println(e.getMessage());
+      return;
+    }
+    commandSink.accept(parsed);
+  }
+}
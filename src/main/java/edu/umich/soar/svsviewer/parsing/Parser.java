@@ -6,20 +6,24 @@ import java.util.List;
 import java.util.Objects;
 
 import edu.umich.soar.svsviewer.command.*;
+import edu.umich.soar.svsviewer.math.Quaternion;
+import edu.umich.soar.svsviewer.math.Rgb;
+import edu.umich.soar.svsviewer.math.Vec3;
+import edu.umich.soar.svsviewer.math.Vertices;
 import jakarta.annotation.Nonnull;
 
 public class Parser {
   public static class ParsingException extends Exception {
-    public ParsingException(String message, List<String> commandTokens) {
+    public ParsingException(String message, TokenBuffer commandTokens) {
       super(message + "\nCommand was: " + commandTokens);
     }
   }
 
   private static class Cursor {
-    private final List<String> commandTokens;
+    private final TokenBuffer commandTokens;
     private int currentTokenIndex;
 
-    private Cursor(List<String> commandTokens) {
+    private Cursor(TokenBuffer commandTokens) {
 
       this.commandTokens = commandTokens;
     }
@@ -30,19 +34,40 @@ public class Parser {
       return currentToken;
     }
 
-    Double advanceIfDouble() {
-      String currentToken = getCurrentToken();
-      if (currentToken == null) {
-        return null;
+    /**
+     * @return the number of consecutive tokens, starting at the current one, that are doubles
+     */
+    int countDoubles() {
+      int count = 0;
+      while (currentTokenIndex + count < commandTokens.size()
+          && commandTokens.isDouble(currentTokenIndex + count)) {
+        count++;
       }
-      double d;
-      try {
-        d = Double.parseDouble(currentToken);
-      } catch (NumberFormatException e) {
-        return null;
+      return count;
+    }
+
+    /**
+     * @throws NumberFormatException if the current token is missing or not a double
+     */
+    double advanceDouble() {
+      if (noRemainingTokens()) {
+        throw new NumberFormatException("no token");
       }
+      return commandTokens.getDouble(currentTokenIndex++);
+    }
+
+    /**
+     * @return the single character making up the current token, or 0 if the token is longer
+     */
+    char advanceChar() {
+      int length = commandTokens.length(currentTokenIndex);
+      char c = length == 1 ? commandTokens.charAt(currentTokenIndex, 0) : 0;
       currentTokenIndex++;
-      return d;
+      return c;
+    }
+
+    int remainingTokens() {
+      return commandTokens.size() - currentTokenIndex;
     }
 
     boolean noRemainingTokens() {
@@ -53,7 +78,11 @@ public class Parser {
       if (noRemainingTokens()) {
         return null;
       }
-      return commandTokens.get(currentTokenIndex);
+      return commandTokens.getString(currentTokenIndex);
+    }
+
+    boolean currentTokenEquals(String s) {
+      return !noRemainingTokens() && commandTokens.tokenEquals(currentTokenIndex, s);
     }
 
     void assertEmpty(String message) throws ParsingException {
@@ -65,29 +94,30 @@ public class Parser {
 
   @Nonnull
   public static List<Command> parse(List<String> commandTokens) throws ParsingException {
+    return parse(TokenBuffer.of(commandTokens));
+  }
+
+  @Nonnull
+  public static List<Command> parse(TokenBuffer commandTokens) throws ParsingException {
 
     if (commandTokens.isEmpty()) {
       throw new ParsingException(
           "cannot parse a command because commandTokens is empty", commandTokens);
     }
-    switch (commandTokens.get(0)) {
-      case "save" -> {
-        if (commandTokens.size() != 2) {
-          throw new ParsingException("Expected 1 argument to 'save' command", commandTokens);
-        }
-        return List.of(new SaveCommand(commandTokens.get(1)));
-      }
-      case "layer" -> {
-        return List.of(parseLayerCommand(commandTokens));
-      }
-      default -> {
-        return parseDrawCommand(commandTokens);
+    if (commandTokens.tokenEquals(0, "save")) {
+      if (commandTokens.size() != 2) {
+        throw new ParsingException("Expected 1 argument to 'save' command", commandTokens);
       }
+      return List.of(new SaveCommand(commandTokens.getString(1)));
+    }
+    if (commandTokens.tokenEquals(0, "layer")) {
+      return List.of(parseLayerCommand(commandTokens));
     }
+    return parseDrawCommand(commandTokens);
   }
 
   @Nonnull
-  private static Command parseLayerCommand(List<String> commandTokens) throws ParsingException {
+  private static Command parseLayerCommand(TokenBuffer commandTokens) throws ParsingException {
     // "layer", layer number, option, val
     if (commandTokens.size() < 4) {
       throw new ParsingException("layer command requires at least 4 arguments", commandTokens);
@@ -99,10 +129,10 @@ public class Parser {
 
     final int layerNumber;
     try {
-      layerNumber = Integer.parseInt(commandTokens.get(1));
+      layerNumber = Integer.parseInt(commandTokens.getString(1));
     } catch (NumberFormatException e) {
       throw new ParsingException(
-          "Could not parse layer number '" + commandTokens.get(1) + "'", commandTokens);
+          "Could not parse layer number '" + commandTokens.getString(1) + "'", commandTokens);
     }
 
     // parse following pairs of option/value
@@ -110,14 +140,14 @@ public class Parser {
         new EnumMap<>(LayerCommand.LayerOption.class);
     for (int tokenIndex = 2; tokenIndex <= commandTokens.size() - 2; tokenIndex += 2) {
       final int value;
-      final String stringValue = commandTokens.get(tokenIndex + 1);
+      final String stringValue = commandTokens.getString(tokenIndex + 1);
       try {
         value = Integer.parseInt(stringValue);
       } catch (NumberFormatException e) {
         throw new ParsingException(
             "Could not parse integer from option value '" + stringValue + "'", commandTokens);
       }
-      String option = commandTokens.get(tokenIndex);
+      String option = commandTokens.getString(tokenIndex);
       switch (option.charAt(0)) {
         case 'l' -> options.put(LayerCommand.LayerOption.LIGHTING, value);
         case 'f' -> options.put(LayerCommand.LayerOption.FLAT, value);
@@ -133,10 +163,9 @@ public class Parser {
   }
 
   @Nonnull
-  private static List<Command> parseDrawCommand(List<String> commandTokens)
-      throws ParsingException {
+  private static List<Command> parseDrawCommand(TokenBuffer commandTokens) throws ParsingException {
     Cursor cursor = new Cursor(commandTokens);
-    if ("draw".equals(cursor.getCurrentToken())) {
+    if (cursor.currentTokenEquals("draw")) {
       cursor.advance();
     }
     if (cursor.noRemainingTokens()) {
@@ -201,56 +230,47 @@ public class Parser {
   private static Command parseGeometryCommand(
       Cursor cursor, NameMatcher sceneMatcher, NameMatcher geometryMatcher)
       throws ParsingException {
-    List<Double> position = null;
-    List<Double> rotation = null;
-    List<Double> scale = null;
-    List<Double> color = null;
-    List<UpdateGeometryCommand.Vertex> vertices = null;
+    Vec3 position = null;
+    Quaternion rotation = null;
+    Vec3 scale = null;
+    Rgb color = null;
+    Vertices vertices = null;
     Double radius = null;
     String text = null;
     Integer layer = null;
     Double lineWidth = null;
     while (!cursor.noRemainingTokens()) {
-      switch (cursor.advance()) {
-        case "p" -> position = parseDoubles(cursor, 3, "position (p)");
-        case "r" -> rotation = parseDoubles(cursor, 4, "rotation (r)");
-        case "s" -> scale = parseDoubles(cursor, 3, "scale (s)");
-        case "c" -> color = parseDoubles(cursor, 3, "color (c)");
-        case "v" -> {
+      int argumentIndex = cursor.currentTokenIndex;
+      switch (cursor.advanceChar()) {
+        case 'p' -> position = parseVec3(cursor, "position (p)");
+        case 'r' -> rotation = parseQuaternion(cursor, "rotation (r)");
+        case 's' -> scale = parseVec3(cursor, "scale (s)");
+        case 'c' -> color = parseRgb(cursor, "color (c)");
+        case 'v' -> {
           if (vertices != null) {
             throw new ParsingException("Found more than one set of vertices", cursor.commandTokens);
           }
-          List<Double> flatVertices = parseDoubles(cursor, "vertices (v)");
-          if (flatVertices.size() % 3 != 0) {
-            throw new ParsingException(
-                "Found " + flatVertices.size() + " vertices (must be multiple of 3)",
-                cursor.commandTokens);
-          }
-          vertices = new ArrayList<>();
-          for (int i = 0; i < flatVertices.size(); i += 3) {
-            vertices.add(
-                new UpdateGeometryCommand.Vertex(
-                    flatVertices.get(i), flatVertices.get(i + 1), flatVertices.get(i + 2)));
-          }
+          vertices = parseVertices(cursor, "vertices (v)");
         }
-        case "b" -> radius = parseDouble(cursor, "ball radius (b)");
-        case "t" -> {
+        case 'b' -> radius = parseDouble(cursor, "ball radius (b)");
+        case 't' -> {
           text = cursor.advance();
           if (Objects.isNull(text)) {
             throw new ParsingException("t (text) argument missing", cursor.commandTokens);
           }
         }
-        case "l" -> {
+        case 'l' -> {
           layer = parseInt(cursor, "layer (l)");
           if (layer < 0) {
             throw new ParsingException(
                 "Layer (l) argument must be non-negative", cursor.commandTokens);
           }
         }
-        case "w" -> lineWidth = parseDouble(cursor, "line width (w)");
+        case 'w' -> lineWidth = parseDouble(cursor, "line width (w)");
         default ->
             throw new ParsingException(
-                "Unknown geometry argument " + cursor.getCurrentToken(), cursor.commandTokens);
+                "Unknown geometry argument " + cursor.commandTokens.getString(argumentIndex),
+                cursor.commandTokens);
       }
     }
 
@@ -270,8 +290,7 @@ public class Parser {
         lineWidth);
   }
 
-  private static void validate(
-      Cursor cursor, List<UpdateGeometryCommand.Vertex> vertices, Double radius, String text)
+  private static void validate(Cursor cursor, Vertices vertices, Double radius, String text)
       throws ParsingException {
     List<String> defined = new ArrayList<>();
     if (vertices != null) {
@@ -291,54 +310,69 @@ public class Parser {
     }
   }
 
-  /** Parse list of doubles of at least length 1 */
-  static List<Double> parseDoubles(Cursor cursor, String sectionName) throws ParsingException {
-    List<Double> valuesList = new ArrayList<>();
-
-    while (!cursor.noRemainingTokens()) {
-      Double arg = cursor.advanceIfDouble();
-      if (arg == null) {
-        break;
-      }
-      valuesList.add(arg);
-    }
-
-    if (valuesList.isEmpty()) {
+  /** Parse a flat list of x/y/z coordinates, read directly into a primitive array */
+  static Vertices parseVertices(Cursor cursor, String sectionName) throws ParsingException {
+    int count = cursor.countDoubles();
+    if (count == 0) {
       throw new ParsingException(
           "No number arguments provided to " + sectionName, cursor.commandTokens);
     }
+    if (count % 3 != 0) {
+      throw new ParsingException(
+          "Found " + count + " vertices (must be multiple of 3)", cursor.commandTokens);
+    }
+    double[] coordinates = new double[count];
+    for (int i = 0; i < count; i++) {
+      coordinates[i] = cursor.advanceDouble();
+    }
+    return new Vertices(coordinates);
+  }
 
-    return valuesList;
+  static Vec3 parseVec3(Cursor cursor, String sectionName) throws ParsingException {
+    requireArgs(cursor, 3, sectionName);
+    return new Vec3(
+        parseDouble(cursor, sectionName),
+        parseDouble(cursor, sectionName),
+        parseDouble(cursor, sectionName));
   }
 
-  static List<Double> parseDoubles(Cursor cursor, int n, String sectionName)
+  static Quaternion parseQuaternion(Cursor cursor, String sectionName) throws ParsingException {
+    requireArgs(cursor, 4, sectionName);
+    return new Quaternion(
+        parseDouble(cursor, sectionName),
+        parseDouble(cursor, sectionName),
+        parseDouble(cursor, sectionName),
+        parseDouble(cursor, sectionName));
+  }
+
+  static Rgb parseRgb(Cursor cursor, String sectionName) throws ParsingException {
+    requireArgs(cursor, 3, sectionName);
+    return new Rgb(
+        parseDouble(cursor, sectionName),
+        parseDouble(cursor, sectionName),
+        parseDouble(cursor, sectionName));
+  }
+
+  /** Throw if fewer than {@code n} arguments remain */
+  private static void requireArgs(Cursor cursor, int n, String sectionName)
       throws ParsingException {
-    List<Double> valuesList = new ArrayList<>();
-    for (int i = 0; i != n && !cursor.noRemainingTokens(); i++) {
-      double arg = parseDouble(cursor, sectionName);
-      valuesList.add(arg);
-    }
-    if (n > 0 && valuesList.size() != n) {
+    int remaining = cursor.remainingTokens();
+    if (remaining < n) {
+      // report a malformed number before the missing ones, as we would when parsing left to right
+      for (int i = 0; i < remaining; i++) {
+        parseDouble(cursor, sectionName);
+      }
       throw new ParsingException(
-          "Expected " + n + " args to " + sectionName + " but found only " + valuesList.size(),
+          "Expected " + n + " args to " + sectionName + " but found only " + remaining,
           cursor.commandTokens);
     }
-    return valuesList;
-  }
-
-  static double[] toPrimitiveArray(List<Double> original) {
-    double[] valuesArray = new double[original.size()];
-    for (int i = 0; i < valuesArray.length; i++) {
-      valuesArray[i] = original.get(i);
-    }
-    return valuesArray;
   }
 
   static double parseDouble(Cursor cursor, String sectionName) throws ParsingException {
     double arg;
     try {
-      arg = Double.parseDouble(cursor.advance());
-    } catch (NullPointerException | NumberFormatException e) {
+      arg = cursor.advanceDouble();
+    } catch (NumberFormatException e) {
       throw new ParsingException(
           sectionName + " argument missing or not a valid floating point number",
           cursor.commandTokens);
@@ -0,0 +1,251 @@
+package edu.umich.soar.svsviewer.parsing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable holder for the tokens of one command. Token text is stored back-to-back in a single char
+ * array and each token is addressed by its offsets, so tokenizing a line doesn't allocate a String
+ * per field. Numbers can be parsed straight from the char data with {@link #getDouble(int)}.
+ *
+ * <p>Not thread-safe; each input source should have its own buffer.
+ */
+public class TokenBuffer {
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  // larger mantissas can't be represented exactly in a double
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  private char[] chars = new char[256];
+  private int charCount = 0;
+  private int[] starts = new int[32];
+  private int[] ends = new int[32];
+  private int size = 0;
+
+  public static TokenBuffer of(List<String> tokens) {
+    TokenBuffer buffer = new TokenBuffer();
+    for (String token : tokens) {
+      buffer.beginToken();
+      for (int i = 0; i < token.length(); i++) {
+        buffer.append(token.charAt(i));
+      }
+      buffer.endToken();
+    }
+    return buffer;
+  }
+
+  public void clear() {
+    charCount = 0;
+    size = 0;
+  }
+
+  void beginToken() {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    starts[size] = charCount;
+  }
+
+  void append(char c) {
+    if (charCount == chars.length) {
+      chars = Arrays.copyOf(chars, charCount * 2);
+    }
+    chars[charCount++] = c;
+  }
+
+  void endToken() {
+    ends[size++] = charCount;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int length(int token) {
+    return ends[token] - starts[token];
+  }
+
+  public char charAt(int token, int index) {
+    return chars[starts[token] + index];
+  }
+
+  /**
+   * @return true if the token consists of exactly the characters in {@code s}
+   */
+  public boolean tokenEquals(int token, String s) {
+    int start = starts[token];
+    int length = ends[token] - start;
+    if (length != s.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (chars[start + i] != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public String getString(int token) {
+    return new String(chars, starts[token], length(token));
+  }
+
+  /**
+   * @return true if {@link #getDouble(int)} would succeed for the token
+   */
+  public boolean isDouble(int token) {
+    if (isSimpleDecimal(chars, starts[token], ends[token])) {
+      return true;
+    }
+    try {
+      Double.parseDouble(getString(token));
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Same result as {@code Double.parseDouble(getString(token))}, but plain decimal numbers (the
+   * only kind SVS sends) are parsed without creating a String.
+   *
+   * @throws NumberFormatException if the token is not a valid double
+   */
+  public double getDouble(int token) {
+    return parseDouble(chars, starts[token], ends[token]);
+  }
+
+  public List<String> toList() {
+    List<String> tokens = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      tokens.add(getString(i));
+    }
+    return tokens;
+  }
+
+  /** Formatted like a {@code List<String>} of the tokens, e.g. {@code [S1, foo, p, 1, 2, 3]} */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(chars, starts[i], length(i));
+    }
+    return sb.append(']').toString();
+  }
+
+  /** Matches {@code [+-]?digits[.digits]([eE][+-]?digits)?} with at least one mantissa digit */
+  private static boolean isSimpleDecimal(char[] c, int start, int end) {
+    int i = start;
+    if (i < end && (c[i] == '+' || c[i] == '-')) {
+      i++;
+    }
+    boolean sawDigit = false;
+    while (i < end && isDigit(c[i])) {
+      sawDigit = true;
+      i++;
+    }
+    if (i < end && c[i] == '.') {
+      i++;
+      while (i < end && isDigit(c[i])) {
+        sawDigit = true;
+        i++;
+      }
+    }
+    if (!sawDigit) {
+      return false;
+    }
+    if (i < end && (c[i] == 'e' || c[i] == 'E')) {
+      i++;
+      if (i < end && (c[i] == '+' || c[i] == '-')) {
+        i++;
+      }
+      if (i == end) {
+        return false;
+      }
+      while (i < end && isDigit(c[i])) {
+        i++;
+      }
+    }
+    return i == end;
+  }
+
+  /**
+   * Parses simple decimals with Clinger's fast path: when the decimal mantissa and the power of ten
+   * are both exactly representable as doubles, a single multiplication or division is correctly
+   * rounded, so the result matches {@link Double#parseDouble(String)}. Everything else is handed to
+   * {@link Double#parseDouble(String)}.
+   */
+  static double parseDouble(char[] c, int start, int end) {
+    if (!isSimpleDecimal(c, start, end)) {
+      return Double.parseDouble(new String(c, start, end - start));
+    }
+    int i = start;
+    boolean negative = false;
+    if (c[i] == '+' || c[i] == '-') {
+      negative = c[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int significantDigits = 0;
+    int exponent = 0;
+    boolean inFraction = false;
+    for (; i < end && c[i] != 'e' && c[i] != 'E'; i++) {
+      if (c[i] == '.') {
+        inFraction = true;
+        continue;
+      }
+      int digit = c[i] - '0';
+      if (mantissa != 0 || digit != 0) {
+        if (++significantDigits > 18) {
+          return Double.parseDouble(new String(c, start, end - start));
+        }
+      }
+      mantissa = mantissa * 10 + digit;
+      if (inFraction) {
+        exponent--;
+      }
+    }
+    if (i < end) {
+      // skip 'e'
+      i++;
+      boolean negativeExponent = false;
+      if (c[i] == '+' || c[i] == '-') {
+        negativeExponent = c[i] == '-';
+        i++;
+      }
+      int explicitExponent = 0;
+      for (; i < end; i++) {
+        explicitExponent = explicitExponent * 10 + (c[i] - '0');
+        if (explicitExponent > 1000) {
+          return Double.parseDouble(new String(c, start, end - start));
+        }
+      }
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+    }
+    double value;
+    if (mantissa == 0) {
+      value = 0;
+    } else if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+      value =
+          exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+    } else {
+      return Double.parseDouble(new String(c, start, end - start));
+    }
+    return negative ? -value : value;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -1,32 +1,9 @@
 package edu.umich.soar.svsviewer.parsing;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Tokenizer {
 
-  /*
-   * Match either:
-   * non-whitespace or quote (unquoted token)
-   * or quotes surrounding double backslashes, backslash quotes, or anything not a backslash or quote (space is fine)
-   */
-  static final Pattern tokenPattern =
-      Pattern.compile(
-          "(?:^|\\s+)((?:[^\\\"\\s])+|(?:\\\"(?:\\\\\\\\|\\\\\\\"|[^\\\"\\\\])*\\\"))",
-          Pattern.MULTILINE);
-
-  private static String cleanField(String field) {
-    if (field.startsWith("\"")) {
-      field = field.substring(1, field.length() - 1);
-    }
-
-    field = field.replaceAll("\\\\\\\\", "\\\\");
-
-    return field;
-  }
-
   /**
    * Commands are split into fields by whitespace; quoted fields can contain spaces, and \ is used
    * for escaping.
@@ -34,17 +11,121 @@ public class Tokenizer {
    * @return list of fields in given command
    */
   public static List<String> tokenizeCommand(String command) {
-    command = command.strip();
-    List<String> fields = new ArrayList<>();
+    TokenBuffer tokens = new TokenBuffer();
+    tokenize(command, tokens);
+    return tokens.toList();
+  }
+
+  /**
+   * Single-pass scanner behind {@link #tokenizeCommand(String)}; writes the fields of {@code
+   * command} into {@code tokens}, replacing its previous contents.
+   *
+   * <p>A field starts at the beginning of the (stripped) command or after whitespace, and is either
+   * a run of characters that are neither whitespace nor {@code "}, or a {@code "}-quoted string in
+   * which {@code \\} and {@code \"} are escapes. Quotes are removed from quoted fields, and {@code
+   * \\} is replaced with {@code \} in all fields ({@code \"} is kept as-is). Text that can't start
+   * a field, such as an unterminated quote, is skipped up to the next whitespace.
+   */
+  public static void tokenize(CharSequence command, TokenBuffer tokens) {
+    tokens.clear();
+    // same as String.strip()
+    int start = 0;
+    int end = command.length();
+    while (start < end && Character.isWhitespace(command.charAt(start))) {
+      start++;
+    }
+    while (end > start && Character.isWhitespace(command.charAt(end - 1))) {
+      end--;
+    }
+
+    // end of the last field found; a new field must be separated from it by whitespace
+    int previousFieldEnd = start;
+    int i = start;
+    while (i < end) {
+      if (!canStartField(command, start, previousFieldEnd, i)) {
+        i++;
+        continue;
+      }
+      char c = command.charAt(i);
+      if (c != '"') {
+        int fieldEnd = i + 1;
+        while (fieldEnd < end
+            && command.charAt(fieldEnd) != '"'
+            && !isSeparator(command.charAt(fieldEnd))) {
+          fieldEnd++;
+        }
+        appendField(command, i, fieldEnd, tokens);
+        previousFieldEnd = i = fieldEnd;
+        continue;
+      }
+      int closingQuote = findClosingQuote(command, i + 1, end);
+      if (closingQuote < 0) {
+        i++;
+        continue;
+      }
+      appendField(command, i + 1, closingQuote, tokens);
+      previousFieldEnd = i = closingQuote + 1;
+    }
+  }
+
+  private static boolean canStartField(
+      CharSequence command, int start, int previousFieldEnd, int i) {
+    if (isSeparator(command.charAt(i))) {
+      return false;
+    }
+    if (i == start) {
+      return true;
+    }
+    char previous = command.charAt(i - 1);
+    // a line terminator that isn't regex whitespace (e.g. \u2028) can end up inside an unquoted
+    // field, but a new field may still start right after it
+    return (i - 1 >= previousFieldEnd && isSeparator(previous)) || isLineTerminator(previous);
+  }
 
-    final Matcher matcher = tokenPattern.matcher(command);
+  /**
+   * @return index of the closing quote, or -1 if the quoted field is not terminated properly
+   */
+  private static int findClosingQuote(CharSequence command, int from, int end) {
+    int i = from;
+    while (i < end) {
+      char c = command.charAt(i);
+      if (c == '"') {
+        return i;
+      }
+      if (c == '\\') {
+        if (i + 1 == end) {
+          return -1;
+        }
+        char escaped = command.charAt(i + 1);
+        if (escaped != '\\' && escaped != '"') {
+          return -1;
+        }
+        i += 2;
+      } else {
+        i++;
+      }
+    }
+    return -1;
+  }
 
-    while (matcher.find()) {
-      if (matcher.groupCount() != 0) {
-        fields.add(cleanField(matcher.group(1)));
+  private static void appendField(CharSequence command, int from, int to, TokenBuffer tokens) {
+    tokens.beginToken();
+    for (int i = from; i < to; i++) {
+      char c = command.charAt(i);
+      tokens.append(c);
+      if (c == '\\' && i + 1 < to && command.charAt(i + 1) == '\\') {
+        i++;
       }
     }
+    tokens.endToken();
+  }
+
+  /** Whitespace as matched by {@code \s} in a regex */
+  private static boolean isSeparator(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
 
-    return fields;
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
   }
 }
@@ -2,16 +2,19 @@ package edu.umich.soar.svsviewer.scene;
 
 import static edu.umich.soar.svsviewer.util.Labels.createLabel;
 
+import edu.umich.soar.svsviewer.math.Quaternion;
+import edu.umich.soar.svsviewer.math.Vec3;
 import edu.umich.soar.svsviewer.util.DrawingMode;
 import java.util.function.Consumer;
 
-import javafx.collections.ObservableList;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.transform.Rotate;
-import javafx.scene.transform.Scale;
-import javafx.scene.transform.Transform;
-import javafx.scene.transform.Translate;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.Shape3D;
+import javafx.scene.shape.Sphere;
+import javafx.scene.transform.Affine;
 
 public class Geometry {
   private final SVSScene parent;
@@ -20,71 +23,262 @@ public class Geometry {
   // We use a Group because we need to be able to specify position/rotation/scale
   // without any particular shape yet specified.
   private final Group group;
-  // holds an exact copy of group, but with DrawMode always set to LINE. This is to
-  // support DrawingMode.FILL_AND_LINE display.
-  private final Group lineGroup;
+  // holds a wireframe copy of group's shape, to support DrawingMode.LINE and FILL_AND_LINE. It
+  // doubles the node count, so it only exists while one of those modes is used, or for a while
+  // after (see discardLineGroup); null otherwise.
+  private Group lineGroup;
+  private final PhongMaterial lineMaterial;
 
   private final Node label;
+  // incremented for every new shape, so that a mesh that finishes building after the geometry was
+  // given another shape can tell that it is out of date
+  private long shapeSequence = 0;
+  // set when the geometry is deleted; no shape is current after that
+  private boolean removed = false;
+  // for StaticBatcher
+  private long lastModifiedFrame = 0;
 
-  private final Scale scale;
-  private final Rotate rotation;
-  private final Translate translation;
+  // translation * rotation * scale, written in place whenever one of them changes; shared by both
+  // groups
+  private final Affine transform = new Affine();
+  private Vec3 position = new Vec3(0, 0, 0);
+  private Quaternion rotation = Quaternion.IDENTITY;
+  private Vec3 scale = new Vec3(1, 1, 1);
 
-  // The ordering here is significant (transform matrices are not commutative)
-  private static final int TRANSLATE_TRANSFORM_INDEX = 0;
-  private static final int ROTATE_TRANSFORM_INDEX = 1;
-  private static final int SCALE_TRANSFORM_INDEX = 2;
-
-  public Geometry(String name, SVSScene parent) {
+  /**
+   * @param lineMaterial for the wireframes of meshes
+   */
+  public Geometry(String name, SVSScene parent, PhongMaterial lineMaterial) {
     this.name = name;
     this.parent = parent;
+    this.lineMaterial = lineMaterial;
     group = new Group();
-    lineGroup = new Group();
     label = createLabel(name);
-
-    rotation = new Rotate();
-    translation = new Translate();
-    scale = new Scale();
-    modifyGroups(
-        g -> {
-          ObservableList<Transform> transforms = g.getTransforms();
-          transforms.add(TRANSLATE_TRANSFORM_INDEX, translation);
-          transforms.add(ROTATE_TRANSFORM_INDEX, rotation);
-          transforms.add(SCALE_TRANSFORM_INDEX, scale);
-        });
+    group.getTransforms().add(transform);
   }
 
   public Group getGroup() {
     return group;
   }
 
+  /**
+   * @return the group holding the wireframe, or null if wireframes aren't drawn
+   */
   public Group getLineGroup() {
     return lineGroup;
   }
 
   /**
    * If the client doesn't need the underlying main Group or line Group, it's recommended to operate
-   * on them via this method to ensure that they stay in sync.
+   * on them via this method to ensure that they stay in sync. The line group is skipped while it
+   * doesn't exist.
    */
   public void modifyGroups(Consumer<Group> modifier) {
     modifier.accept(getGroup());
-    modifier.accept(getLineGroup());
+    if (lineGroup != null) {
+      modifier.accept(lineGroup);
+    }
   }
 
   public void clear() {
     modifyGroups(g -> g.getChildren().clear());
   }
 
-  public void setTranslation(Translate t) {
-    modifyGroups(g -> g.getTransforms().set(TRANSLATE_TRANSFORM_INDEX, t));
+  /**
+   * @return the shape, or null if there is none
+   */
+  public Shape3D getShape() {
+    return group.getChildren().isEmpty() ? null : (Shape3D) group.getChildren().getFirst();
+  }
+
+  /**
+   * Show {@code shape}, after {@link #startNewShape()}. Its wireframe is derived from it whenever
+   * wireframes are needed.
+   */
+  public void setShape(Shape3D shape) {
+    group.getChildren().setAll(shape);
+    if (lineGroup != null) {
+      setWireframe();
+    }
+  }
+
+  private void setWireframe() {
+    unbindWireframe();
+    Shape3D wireframe = null;
+    Shape3D shape = getShape();
+    if (shape != null) {
+      wireframe = createWireframe(shape);
+    }
+    if (wireframe == null) {
+      lineGroup.getChildren().clear();
+    } else {
+      lineGroup.getChildren().setAll(wireframe);
+    }
   }
 
-  public void setRotation(Rotate r) {
-    modifyGroups(g -> g.getTransforms().set(ROTATE_TRANSFORM_INDEX, r));
+  private Shape3D createWireframe(Shape3D shape) {
+    Shape3D wireframe;
+    if (shape instanceof MeshView meshView) {
+      MeshView lineMesh = new MeshView();
+      // meshes are attached once they are built, which may be after this
+      lineMesh.meshProperty().bind(meshView.meshProperty());
+      lineMesh.setMaterial(lineMaterial);
+      wireframe = lineMesh;
+    } else if (shape instanceof Sphere sphere) {
+      wireframe = new Sphere(sphere.getRadius(), sphere.getDivisions());
+    } else {
+      return null;
+    }
+    wireframe.setDrawMode(DrawMode.LINE);
+    return wireframe;
+  }
+
+  // so that the fill mesh view doesn't keep a discarded wireframe alive through its listener
+  private void unbindWireframe() {
+    for (Node child : lineGroup.getChildren()) {
+      if (child instanceof MeshView lineMesh) {
+        lineMesh.meshProperty().unbind();
+      }
+    }
+  }
+
+  private void showLineGroup() {
+    if (lineGroup == null) {
+      lineGroup = new Group();
+      lineGroup.getTransforms().add(transform);
+      setWireframe();
+      // not next to group, which is taken out of the scene while it is baked into a batch
+      parent.root().getChildren().add(lineGroup);
+    }
+    lineGroup.setVisible(true);
+  }
+
+  /**
+   * Drop the line group if wireframes aren't shown at the moment; it is rebuilt when they are
+   * needed again.
+   *
+   * @return the number of nodes released
+   */
+  int discardLineGroup() {
+    if (lineGroup == null || lineGroup.isVisible()) {
+      return 0;
+    }
+    int released = 1 + lineGroup.getChildren().size();
+    unbindWireframe();
+    if (lineGroup.getParent() instanceof Group sceneRoot) {
+      sceneRoot.getChildren().remove(lineGroup);
+    }
+    lineGroup = null;
+    return released;
+  }
+
+  /**
+   * Remove the current shape to make room for a new one.
+   *
+   * @return the new shape's sequence number, for {@link #isCurrentShape(long)}
+   */
+  public long startNewShape() {
+    clear();
+    return ++shapeSequence;
   }
 
-  public void setScale(Scale s) {
-    modifyGroups(g -> g.getTransforms().set(SCALE_TRANSFORM_INDEX, s));
+  /**
+   * @return whether no other shape was started since the one with {@code sequence}
+   */
+  public boolean isCurrentShape(long sequence) {
+    return !removed && shapeSequence == sequence;
+  }
+
+  /**
+   * The geometry was deleted, along with its scene or on its own. Meshes that finish building
+   * afterwards are dropped, and the geometry isn't indexed or batched again.
+   */
+  void markRemoved() {
+    removed = true;
+  }
+
+  boolean isRemoved() {
+    return removed;
+  }
+
+  /** Set the material of the shape; the wireframe keeps its own */
+  public void setMaterial(PhongMaterial material) {
+    for (Node child : group.getChildren()) {
+      if (child instanceof Shape3D shape) {
+        shape.setMaterial(material);
+      }
+    }
+  }
+
+  /**
+   * Change any of position, rotation and scale at once, with a single write of the transform
+   * matrix. A null argument keeps the current value.
+   */
+  public void setTransform(Vec3 position, Quaternion rotation, Vec3 scale) {
+    if (position != null) {
+      this.position = position;
+    }
+    if (rotation != null) {
+      this.rotation = rotation;
+    }
+    if (scale != null) {
+      this.scale = scale;
+    }
+    writeTransform(transform, this.position, this.rotation, this.scale);
+  }
+
+  /**
+   * @return the transform of both groups; must not be modified
+   */
+  Affine getTransform() {
+    return transform;
+  }
+
+  long getLastModifiedFrame() {
+    return lastModifiedFrame;
+  }
+
+  void setLastModifiedFrame(long frame) {
+    lastModifiedFrame = frame;
+  }
+
+  /**
+   * @return the current position of the geometry's origin within its scene, which is where its
+   *     label is anchored
+   */
+  public Vec3 getPosition() {
+    return position;
+  }
+
+  /**
+   * Sets {@code affine} to translate by {@code position}, rotate by {@code rotation} and scale by
+   * {@code scale}, applied to points in the reverse order. The rotation is normalized first, since
+   * SVS sends quaternions rounded to 6 digits.
+   */
+  static void writeTransform(Affine affine, Vec3 position, Quaternion rotation, Vec3 scale) {
+    double x = rotation.x();
+    double y = rotation.y();
+    double z = rotation.z();
+    double w = rotation.w();
+    double norm = x * x + y * y + z * z + w * w;
+    // 2 / |q|^2 normalizes the products below
+    double s = norm > 0 ? 2 / norm : 0;
+    double xx = x * x * s, yy = y * y * s, zz = z * z * s;
+    double xy = x * y * s, xz = x * z * s, yz = y * z * s;
+    double wx = w * x * s, wy = w * y * s, wz = w * z * s;
+    affine.setToTransform(
+        (1 - yy - zz) * scale.x(),
+        (xy - wz) * scale.y(),
+        (xz + wy) * scale.z(),
+        position.x(),
+        (xy + wz) * scale.x(),
+        (1 - xx - zz) * scale.y(),
+        (yz - wx) * scale.z(),
+        position.y(),
+        (xz - wy) * scale.x(),
+        (yz + wx) * scale.y(),
+        (1 - xx - yy) * scale.z(),
+        position.z());
   }
 
   public Node getLabel() {
@@ -99,16 +293,19 @@ public class Geometry {
     return parent;
   }
 
+  /** Also creates the line group the first time that the mode needs wireframes */
   void setDrawingMode(DrawingMode mode) {
     if (mode == DrawingMode.LINE) {
       getGroup().setVisible(false);
-      getLineGroup().setVisible(true);
+      showLineGroup();
     } else if (mode == DrawingMode.FILL) {
       getGroup().setVisible(true);
-      getLineGroup().setVisible(false);
+      if (lineGroup != null) {
+        lineGroup.setVisible(false);
+      }
     } else if (mode == DrawingMode.FILL_AND_LINE) {
       getGroup().setVisible(true);
-      getLineGroup().setVisible(true);
+      showLineGroup();
     }
   }
 }
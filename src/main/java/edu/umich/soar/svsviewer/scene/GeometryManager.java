@@ -3,21 +3,37 @@ package edu.umich.soar.svsviewer.scene;
 import static edu.umich.soar.svsviewer.Axes3DBuilder.*;
 
 import edu.umich.soar.svsviewer.Axes3DBuilder;
+import edu.umich.soar.svsviewer.ViewerOptions;
 import edu.umich.soar.svsviewer.ViewerPreferences;
 import edu.umich.soar.svsviewer.command.NameMatcher;
+import edu.umich.soar.svsviewer.math.Rgb;
+import edu.umich.soar.svsviewer.math.Vec3;
+import edu.umich.soar.svsviewer.math.Vertices;
 import edu.umich.soar.svsviewer.util.DrawingMode;
-import edu.umich.soar.svsviewer.util.Labels;
-import edu.umich.soar.svsviewer.util.WildcardMap;
+import edu.umich.soar.svsviewer.util.TimingStats;
+import edu.umich.soar.svsviewer.util.ConcurrentWildcardMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.scene.Group;
 import javafx.scene.Node;
+import javafx.scene.SubScene;
 import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.TriangleMesh;
+import javafx.util.Duration;
 
 /**
  * Manages all of the 3D objects received over the network. Geometries are in scenes, which
@@ -25,22 +41,46 @@ import javafx.scene.layout.Pane;
  */
 public class GeometryManager {
 
-  private final WildcardMap<SVSScene> scenes = new WildcardMap<>();
+  private final ConcurrentWildcardMap<SVSScene> scenes = new ConcurrentWildcardMap<>();
+  private final MeshCache meshCache = new MeshCache();
+  private final MaterialRegistry materials = new MaterialRegistry();
+  private final StaticBatcher staticBatcher = new StaticBatcher();
+  private final SpatialIndex spatialIndex = new SpatialIndex();
+  // wireframes are discarded after this long in DrawingMode.FILL
+  private final PauseTransition wireframeDiscard =
+      new PauseTransition(Duration.seconds(ViewerOptions.DEFAULT_WIREFRAME_IDLE_SECONDS));
 
   private final Group geometryRoot;
   private final Consumer<String> showMessage;
   private final Axes3D axes;
   private final ViewerPreferences preferences;
   private final Pane labelsPane;
+  private final LabelProjector labelProjector;
+  // label anchors as x, y, z triples and their labels, reused from pass to pass
+  private double[] labelPoints = new double[3 * 64];
+  private Node[] labelNodes = new Node[64];
   private static final String GEO_LABELS_OFF_CLASS = "geo-labels-off";
+  // a label update is already scheduled; further requests before it runs are redundant
+  private boolean rerenderRequested = false;
+  // geometries that moved since the last label update; only their labels need re-projecting
+  private final Set<Geometry> dirtyLabels = new LinkedHashSet<>();
+  // the camera or viewport changed, so every label in the displayed scene needs re-projecting
+  private boolean allLabelsDirty = false;
+  // TODO: for now, we are always displaying only the S1 scene
+  private SVSScene displayedScene = null;
+
+  private final TimingStats geometryLabelStats = new TimingStats("Geometry label updates");
+  private final TimingStats cameraLabelStats = new TimingStats("Camera label updates");
 
   public GeometryManager(
       ViewerPreferences preferences,
       Pane rootPane,
+      SubScene viewerScene,
       Group geometryRoot,
       Consumer<String> showMessage) {
     this.preferences = preferences;
     this.labelsPane = rootPane;
+    this.labelProjector = new LabelProjector(viewerScene, labelsPane);
     //    StackPane.setAlignment(labelsPane, Pos.TOP_LEFT);
     //    labelsPane.prefWidthProperty().bind(rootPane.widthProperty());
     //    labelsPane.prefHeightProperty().bind(rootPane.heightProperty());
@@ -57,7 +97,8 @@ public class GeometryManager {
     for (Node label : axes.getLabels()) {
       labelsPane.getChildren().add(label);
     }
-    axes.updateLabelLocations(labelsPane);
+    // the camera isn't set up yet; place the axis labels once it is
+    requestSceneRerender();
 
     axes.setVisible(preferences.isShowAxes());
     preferences
@@ -65,6 +106,8 @@ public class GeometryManager {
         .addListener(
             (_observable, oldVal, newVal) -> {
               axes.setVisible(newVal);
+              // axis labels aren't projected while hidden
+              requestSceneRerender();
             });
 
     setLabelVisibility(preferences.isShowLabels());
@@ -75,6 +118,7 @@ public class GeometryManager {
               setLabelVisibility(newVal);
             });
 
+    wireframeDiscard.setOnFinished(event -> discardWireframes());
     setDrawingMode(preferences.getDrawingMode());
     preferences
         .drawingModeProperty()
@@ -101,6 +145,7 @@ public class GeometryManager {
           // showing different scenes on different tabs or something.
           if (sceneName.equals("S1")) {
             geometryRoot.getChildren().add(s.root());
+            displayedScene = s;
           }
           showMessage.accept("Created scene " + sceneName);
           return s;
@@ -142,10 +187,7 @@ public class GeometryManager {
         }
       }
       case WILDCARD ->
-          scenesToDeleteFrom =
-              scenes.getWithWildcards(sceneMatcher.namePattern()).stream()
-                  .map(WildcardMap.Entry::value)
-                  .toList();
+          scenesToDeleteFrom = scenes.getValuesWithWildcards(sceneMatcher.namePattern());
       default ->
           throw new UnsupportedOperationException("Unknown match type " + sceneMatcher.matchType());
     }
@@ -166,10 +208,8 @@ public class GeometryManager {
                 Collection<Geometry> removedGeometries =
                     s.geometries().removeWithWildcards(geometryMatcher.namePattern());
                 removedGeometries.forEach(
-                    g -> {
-                      showMessage.accept("Removed geometry " + s.name() + "." + g);
-                      removeGeometryNodes(s, g);
-                    });
+                    g -> showMessage.accept("Removed geometry " + s.name() + "." + g));
+                removeGeometryNodes(s, removedGeometries);
               });
       default ->
           throw new UnsupportedOperationException("Unknown match type " + sceneMatcher.matchType());
@@ -177,15 +217,53 @@ public class GeometryManager {
   }
 
   private void removeSceneNodes(SVSScene scene) {
-    for (Geometry geo : scene.geometries().values()) {
-      removeGeometryNodes(scene, geo);
-    }
+    scene.geometries().forEachValue(Geometry::markRemoved);
+    // the geometries' groups go away with the scene's root
+    removeLabels(scene.geometries().values());
+    staticBatcher.removeScene(scene);
+    spatialIndex.removeScene(scene);
     geometryRoot.getChildren().remove(scene.root());
+    if (scene == displayedScene) {
+      displayedScene = null;
+    }
   }
 
   private void removeGeometryNodes(SVSScene scene, Geometry geometry) {
+    geometry.markRemoved();
     geometry.modifyGroups(g -> scene.root().getChildren().remove(g));
+    staticBatcher.remove(geometry);
+    spatialIndex.remove(geometry);
     labelsPane.getChildren().remove(geometry.getLabel());
+    dirtyLabels.remove(geometry);
+  }
+
+  /**
+   * Removes the nodes of many geometries of {@code scene} with one change per children list,
+   * instead of one list search and change event per node.
+   */
+  private void removeGeometryNodes(SVSScene scene, Collection<Geometry> geometries) {
+    if (geometries.isEmpty()) {
+      return;
+    }
+    geometries.forEach(Geometry::markRemoved);
+    if (scene.geometries().isEmpty()) {
+      // including the combined meshes of static batching, which are all empty now
+      scene.root().getChildren().clear();
+    } else {
+      Set<Node> groups = new HashSet<>();
+      geometries.forEach(geometry -> geometry.modifyGroups(groups::add));
+      scene.root().getChildren().removeAll(groups);
+    }
+    geometries.forEach(staticBatcher::remove);
+    geometries.forEach(spatialIndex::remove);
+    removeLabels(geometries);
+  }
+
+  private void removeLabels(Collection<Geometry> geometries) {
+    Set<Node> labels = new HashSet<>();
+    geometries.forEach(geometry -> labels.add(geometry.getLabel()));
+    labelsPane.getChildren().removeAll(labels);
+    dirtyLabels.removeAll(geometries);
   }
 
   // delete scene(s)
@@ -193,6 +271,10 @@ public class GeometryManager {
   // delete geometry/ies
   // find scene by match exact/wildcard
   // find geometries by scene/geometry matchers
+  /**
+   * Safe to call from any thread: the scene and geometry maps are read through snapshots, so e.g.
+   * the network thread can resolve matchers while the FX thread updates the scene graph.
+   */
   public List<Geometry> findGeometries(NameMatcher sceneMatcher, NameMatcher geometryMatcher) {
     List<SVSScene> scenesToSearch;
     switch (sceneMatcher.matchType()) {
@@ -205,11 +287,7 @@ public class GeometryManager {
           return Collections.emptyList();
         }
       }
-      case WILDCARD ->
-          scenesToSearch =
-              scenes.getWithWildcards(sceneMatcher.namePattern()).stream()
-                  .map(WildcardMap.Entry::value)
-                  .toList();
+      case WILDCARD -> scenesToSearch = scenes.getValuesWithWildcards(sceneMatcher.namePattern());
       default ->
           throw new UnsupportedOperationException("Unknown match type " + sceneMatcher.matchType());
     }
@@ -227,12 +305,8 @@ public class GeometryManager {
       case WILDCARD ->
           scenesToSearch.forEach(
               s ->
-                  s.geometries()
-                      .getWithWildcards(geometryMatcher.namePattern())
-                      .forEach(
-                          entry -> {
-                            matchedGeometries.add(entry.value());
-                          }));
+                  matchedGeometries.addAll(
+                      s.geometries().getValuesWithWildcards(geometryMatcher.namePattern())));
       default ->
           throw new UnsupportedOperationException("Unknown match type " + sceneMatcher.matchType());
     }
@@ -252,11 +326,7 @@ public class GeometryManager {
           return;
         }
       }
-      case WILDCARD ->
-          scenesToUpdate =
-              scenes.getWithWildcards(sceneMatcher.namePattern()).stream()
-                  .map(WildcardMap.Entry::value)
-                  .toList();
+      case WILDCARD -> scenesToUpdate = scenes.getValuesWithWildcards(sceneMatcher.namePattern());
       default ->
           throw new UnsupportedOperationException("Unknown match type " + sceneMatcher.matchType());
     }
@@ -266,12 +336,19 @@ public class GeometryManager {
           .computeIfAbsent(
               geometryName,
               n -> {
-                Geometry geometry = new Geometry(geometryName, s);
+                Geometry geometry =
+                    new Geometry(
+                        geometryName,
+                        s,
+                        materials.get(MaterialRegistry.LINE_COLOR, MaterialRegistry.Style.PLAIN));
                 geometry.modifyGroups(node -> s.root().getChildren().add(node));
                 // TODO: unsatisfyingly places label at 0,0; should be invisible until the node is
                 // updated with a location
                 labelsPane.getChildren().add(geometry.getLabel());
                 geometry.setDrawingMode(preferences.getDrawingMode());
+                staticBatcher.add(geometry);
+                spatialIndex.modified(geometry);
+                requestLabelUpdate(geometry);
 
                 showMessage.accept("Added geometry " + s.name() + "." + geometry.getName());
 
@@ -280,35 +357,264 @@ public class GeometryManager {
     }
   }
 
+  /**
+   * @return a live view of all scenes
+   */
+  Collection<SVSScene> getScenes() {
+    return scenes.values();
+  }
+
+  public MeshCache getMeshCache() {
+    return meshCache;
+  }
+
+  /**
+   * Call before changing {@code geometry}, so that it is taken out of its static batch, if any, and
+   * isn't baked again until it has stayed unchanged for a while. Its box in the spatial index is
+   * updated at the end of the frame.
+   */
+  public void markModified(Geometry geometry) {
+    staticBatcher.modified(geometry);
+    spatialIndex.modified(geometry);
+  }
+
+  /**
+   * @param staticFrames bake geometries that haven't changed for this many frames into one mesh per
+   *     scene and material; 0 (the default) turns this off
+   */
+  public void setStaticBatching(int staticFrames) {
+    staticBatcher.setStaticFrames(staticFrames);
+  }
+
+  /** Called once per frame on the FX thread, after the frame's commands were applied */
+  public void onFrame() {
+    staticBatcher.onFrame();
+    spatialIndex.onFrame();
+  }
+
+  /**
+   * Finds the geometry of the displayed scene that a ray hits first, e.g. for selecting objects
+   * with the mouse. Hits are tested against bounding boxes, so a ray that passes close to a round
+   * or slanted shape may still hit it. Reflects changes as of the last {@link #onFrame()}.
+   *
+   * @param origin in the scene's coordinates
+   * @return null if nothing is hit
+   */
+  public Geometry pick(Vec3 origin, Vec3 direction) {
+    if (displayedScene == null) {
+      return null;
+    }
+    return spatialIndex.pick(
+        displayedScene,
+        origin.x(),
+        origin.y(),
+        origin.z(),
+        direction.x(),
+        direction.y(),
+        direction.z());
+  }
+
+  /**
+   * @return the geometries of the displayed scene whose bounding boxes are within {@code radius} of
+   *     {@code center}, in no particular order
+   */
+  public List<Geometry> findGeometriesNear(Vec3 center, double radius) {
+    List<Geometry> found = new ArrayList<>();
+    if (displayedScene != null) {
+      spatialIndex.queryRadius(
+          displayedScene, center.x(), center.y(), center.z(), radius, found::add);
+    }
+    return found;
+  }
+
+  /**
+   * @param planes {@code a b c d} per plane of the frustum (or any convex volume), with normals
+   *     pointing inwards
+   * @return the geometries of the displayed scene whose bounding boxes are at least partly inside
+   *     the planes, in no particular order
+   */
+  public List<Geometry> findGeometriesInFrustum(double[] planes) {
+    List<Geometry> found = new ArrayList<>();
+    if (displayedScene != null) {
+      spatialIndex.queryFrustum(displayedScene, planes, found::add);
+    }
+    return found;
+  }
+
+  public MaterialRegistry getMaterials() {
+    return materials;
+  }
+
+  /**
+   * Give all of {@code geometries} the same shared material of {@code color}. Used for every color
+   * update, so a wildcard update recolors all matching geometries with a single material lookup.
+   */
+  public void setColor(Collection<Geometry> geometries, Rgb color) {
+    PhongMaterial material =
+        materials.get(
+            new Color(color.red(), color.green(), color.blue(), 1), MaterialRegistry.Style.PLAIN);
+    for (Geometry geometry : geometries) {
+      markModified(geometry);
+      geometry.setMaterial(material);
+    }
+  }
+
+  /**
+   * Pass the mesh for {@code vertices} to {@code attach} once it is built: right away if it is
+   * ready, otherwise on the FX thread in a later pulse. Nothing is attached if {@code geometry} was
+   * given another shape in the meantime.
+   *
+   * @param shape from {@link Geometry#startNewShape()}
+   */
+  public void attachMesh(
+      Geometry geometry, long shape, Vertices vertices, Consumer<TriangleMesh> attach) {
+    CompletableFuture<TriangleMesh> mesh = meshCache.getMesh(vertices);
+    BiConsumer<TriangleMesh, Throwable> attachIfCurrent =
+        (result, error) -> {
+          if (!geometry.isCurrentShape(shape)) {
+            return;
+          }
+          if (error != null) {
+            System.err.println("Failed to build mesh for " + geometry.getName() + ": " + error);
+            return;
+          }
+          markModified(geometry);
+          attach.accept(result);
+        };
+    if (mesh.isDone()) {
+      mesh.whenComplete(attachIfCurrent);
+    } else {
+      mesh.whenCompleteAsync(attachIfCurrent, Platform::runLater);
+    }
+  }
+
+  /**
+   * The camera or viewport changed, which moves every label on screen. Labels of the displayed
+   * scene are re-projected once before the next pulse, however often this is called.
+   */
   public void requestSceneRerender() {
-    Platform.runLater(this::updateLabelPositions);
+    allLabelsDirty = true;
+    scheduleLabelUpdate();
   }
 
-  public void updateLabelPositions() {
+  /**
+   * {@code geometry}'s position changed; only its own label is re-projected before the next pulse.
+   */
+  public void requestLabelUpdate(Geometry geometry) {
+    if (geometry.getParent() != displayedScene) {
+      // labels of scenes that aren't shown can't be projected onto the screen anyway
+      return;
+    }
+    dirtyLabels.add(geometry);
+    scheduleLabelUpdate();
+  }
+
+  private void scheduleLabelUpdate() {
+    if (rerenderRequested) {
+      return;
+    }
+    rerenderRequested = true;
+    Platform.runLater(
+        () -> {
+          rerenderRequested = false;
+          updateLabelPositions();
+        });
+  }
+
+  private void updateLabelPositions() {
     // TODO: would be nice to manage labels in a dedicated class
-    // System.out.println("Updating label positions...");
-    // TODO: should be done only for the updated scene
-    scenes
-        .values()
-        .forEach(
-            scene ->
-                scene
-                    .geometries()
-                    .values()
-                    .forEach(
-                        geometry ->
-                            Labels.updateLocation(
-                                labelsPane, geometry.getGroup(), geometry.getLabel())));
-
-    axes.updateLabelLocations(labelsPane);
+    long start = System.nanoTime();
+    if (allLabelsDirty) {
+      labelProjector.beginPass();
+      int count = 0;
+      if (displayedScene != null) {
+        count = projectLabels(displayedScene, displayedScene.geometries().values());
+      }
+      axes.updateLabelLocations(labelProjector);
+      cameraLabelStats.record(count, System.nanoTime() - start);
+    } else if (!dirtyLabels.isEmpty() && displayedScene != null) {
+      labelProjector.beginPass();
+      int count = projectLabels(displayedScene, dirtyLabels);
+      geometryLabelStats.record(count, System.nanoTime() - start);
+    }
+    allLabelsDirty = false;
+    dirtyLabels.clear();
+  }
+
+  /** Projects the labels of {@code geometries}, which must all be in {@code scene} */
+  private int projectLabels(SVSScene scene, Collection<Geometry> geometries) {
+    int count = geometries.size();
+    if (labelNodes.length < count) {
+      int capacity = Math.max(count, 2 * labelNodes.length);
+      labelNodes = new Node[capacity];
+      labelPoints = new double[3 * capacity];
+    }
+    int i = 0;
+    for (Geometry geometry : geometries) {
+      Vec3 position = geometry.getPosition();
+      labelPoints[3 * i] = position.x();
+      labelPoints[3 * i + 1] = position.y();
+      labelPoints[3 * i + 2] = position.z();
+      labelNodes[i] = geometry.getLabel();
+      i++;
+    }
+    labelProjector.project(scene.root(), labelPoints, labelNodes, count);
+    // don't keep removed labels reachable
+    Arrays.fill(labelNodes, 0, count, null);
+    return count;
+  }
+
+  /** Cost of re-projecting the labels of individual geometries that moved */
+  public TimingStats getGeometryLabelStats() {
+    return geometryLabelStats;
+  }
+
+  /** Cost of re-projecting all labels of the displayed scene after camera or viewport changes */
+  public TimingStats getCameraLabelStats() {
+    return cameraLabelStats;
   }
 
   private void setDrawingMode(DrawingMode mode) {
     // TODO: just set for active scene
-    scenes
-        .values()
-        .forEach(
-            scene ->
-                scene.geometries().values().forEach(geometry -> geometry.setDrawingMode(mode)));
+    scenes.forEachValue(
+        scene -> scene.geometries().forEachValue(geometry -> geometry.setDrawingMode(mode)));
+    staticBatcher.setVisible(mode != DrawingMode.LINE);
+    if (mode == DrawingMode.FILL) {
+      wireframeDiscard.playFromStart();
+    } else {
+      wireframeDiscard.stop();
+    }
+  }
+
+  /**
+   * @param idle how long to keep the hidden wireframes after switching to {@link DrawingMode#FILL},
+   *     in case the user switches back
+   */
+  public void setWireframeIdleTimeout(Duration idle) {
+    wireframeDiscard.setDuration(idle);
+  }
+
+  private void discardWireframes() {
+    int[] released = {0, 0};
+    scenes.forEachValue(
+        scene ->
+            scene
+                .geometries()
+                .forEachValue(
+                    geometry -> {
+                      int nodes = geometry.discardLineGroup();
+                      if (nodes > 0) {
+                        released[0]++;
+                        released[1] += nodes;
+                      }
+                    }));
+    if (released[0] > 0) {
+      showMessage.accept(
+          "Discarded the hidden wireframes of "
+              + released[0]
+              + " geometries ("
+              + released[1]
+              + " nodes)");
+    }
   }
 }
@@ -0,0 +1,147 @@
+package edu.umich.soar.svsviewer.scene;
+
+import edu.umich.soar.svsviewer.util.Labels;
+
+import javafx.geometry.Point3D;
+import javafx.scene.Camera;
+import javafx.scene.Node;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.SubScene;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Transform;
+
+/**
+ * Moves 2D labels in an overlay pane so that they sit on top of points in a 3D {@link SubScene}.
+ *
+ * <p>{@link Labels#updateLocation} walks the whole transform chain from the node to the screen and
+ * back down to the pane for every label. Instead, this captures the camera's view and projection
+ * and the sub-scene-to-pane mapping once per pass in {@link #beginPass()}, and then projects whole
+ * batches of points with plain arithmetic. Labels whose point is behind the camera, outside the
+ * clipping range or off-screen are hidden.
+ *
+ * <p>Only a {@link PerspectiveCamera} with a fixed eye at the camera's origin is supported; with
+ * any other camera, labels are positioned one at a time with {@link Labels#updateLocation}.
+ */
+public class LabelProjector {
+  private final SubScene subScene;
+  private final Pane labelsPane;
+
+  private boolean ready = false;
+  private Transform worldToCamera;
+  private double width;
+  private double height;
+  // distance from the eye to the projection plane, in pixels
+  private double focalLength;
+  private double nearClip;
+  private double farClip;
+  // 2D mapping from sub-scene coordinates to labels pane coordinates
+  private double paneXX;
+  private double paneXY;
+  private double paneTX;
+  private double paneYX;
+  private double paneYY;
+  private double paneTY;
+
+  public LabelProjector(SubScene subScene, Pane labelsPane) {
+    this.subScene = subScene;
+    this.labelsPane = labelsPane;
+  }
+
+  /**
+   * Captures the current camera, viewport and pane placement. Must be called before each batch of
+   * {@link #project} calls, since any of them may have changed since the last pass.
+   *
+   * @return false if the fast projection can't be used, in which case labels are positioned one at
+   *     a time
+   */
+  public boolean beginPass() {
+    ready = false;
+    Camera camera = subScene.getCamera();
+    if (!(camera instanceof PerspectiveCamera perspective)
+        || !perspective.isFixedEyeAtCameraZero()) {
+      return false;
+    }
+    width = subScene.getWidth();
+    height = subScene.getHeight();
+    if (width <= 0 || height <= 0) {
+      return false;
+    }
+    Transform subSceneToPane;
+    try {
+      worldToCamera = camera.getLocalToSceneTransform().createInverse();
+      subSceneToPane =
+          labelsPane
+              .getLocalToSceneTransform()
+              .createInverse()
+              .createConcatenation(subScene.getLocalToSceneTransform());
+    } catch (NonInvertibleTransformException e) {
+      return false;
+    }
+    paneXX = subSceneToPane.getMxx();
+    paneXY = subSceneToPane.getMxy();
+    paneTX = subSceneToPane.getTx();
+    paneYX = subSceneToPane.getMyx();
+    paneYY = subSceneToPane.getMyy();
+    paneTY = subSceneToPane.getTy();
+
+    double fovExtent = perspective.isVerticalFieldOfView() ? height : width;
+    focalLength = fovExtent / 2 / Math.tan(Math.toRadians(perspective.getFieldOfView()) / 2);
+    nearClip = perspective.getNearClip();
+    farClip = perspective.getFarClip();
+    ready = true;
+    return true;
+  }
+
+  /**
+   * Moves {@code labels[i]} to the projection of point {@code i} for the first {@code count}
+   * points. {@code points} holds consecutive x, y, z triples in {@code parent}'s local coordinates.
+   */
+  public void project(Node parent, double[] points, Node[] labels, int count) {
+    if (!ready) {
+      for (int i = 0; i < count; i++) {
+        Point3D point = new Point3D(points[3 * i], points[3 * i + 1], points[3 * i + 2]);
+        Labels.updateLocation(labelsPane, parent, point, labels[i]);
+      }
+      return;
+    }
+    Transform t = worldToCamera.createConcatenation(parent.getLocalToSceneTransform());
+    double xx = t.getMxx();
+    double xy = t.getMxy();
+    double xz = t.getMxz();
+    double tx = t.getTx();
+    double yx = t.getMyx();
+    double yy = t.getMyy();
+    double yz = t.getMyz();
+    double ty = t.getTy();
+    double zx = t.getMzx();
+    double zy = t.getMzy();
+    double zz = t.getMzz();
+    double tz = t.getTz();
+    double centerX = width / 2;
+    double centerY = height / 2;
+
+    for (int i = 0; i < count; i++) {
+      double x = points[3 * i];
+      double y = points[3 * i + 1];
+      double z = points[3 * i + 2];
+      Node label = labels[i];
+
+      double depth = zx * x + zy * y + zz * z + tz;
+      if (depth < nearClip || depth > farClip) {
+        label.setVisible(false);
+        continue;
+      }
+      double scale = focalLength / depth;
+      double screenX = centerX + (xx * x + xy * y + xz * z + tx) * scale;
+      double screenY = centerY + (yx * x + yy * y + yz * z + ty) * scale;
+      if (screenX < 0 || screenX > width || screenY < 0 || screenY > height) {
+        label.setVisible(false);
+        continue;
+      }
+      label.setLayoutX(paneXX * screenX + paneXY * screenY + paneTX);
+      label.setLayoutY(paneYX * screenX + paneYY * screenY + paneTY);
+      label.setVisible(true);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package edu.umich.soar.svsviewer.scene;
+
+import java.util.HashMap;
+import java.util.Map;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+
+/**
+ * Interns materials by color and style, so that all shapes of the same color share one {@link
+ * PhongMaterial} and changing a shape's color is just a reference swap. Shared materials must not
+ * be modified.
+ *
+ * <p>Colors are rounded to 8 bits per channel first, which is all that the display shows anyway.
+ * SGEL colors are arbitrary doubles, so e.g. a color that is animated smoothly would otherwise add
+ * a material with every update; this way, it adds at most 256 for each channel it sweeps. Materials
+ * are never evicted.
+ *
+ * <p>Only to be used from the FX thread.
+ */
+public class MaterialRegistry {
+  public enum Style {
+    /** Diffuse color only; what {@code c r g b} updates use */
+    PLAIN,
+    /** With white specular highlights; the default for vertex geometries */
+    SHINY
+  }
+
+  /** The default material of vertex geometries */
+  public static final Color DEFAULT_COLOR = Color.ALICEBLUE;
+
+  /** The material of wireframes */
+  public static final Color LINE_COLOR = Color.BLACK;
+
+  private static final double SHINY_SPECULAR_POWER = 100.0;
+
+  private record Key(Color color, Style style) {}
+
+  private final Map<Key, PhongMaterial> materials = new HashMap<>();
+
+  /**
+   * @return the shared material of {@code color} rounded to 8 bits per channel
+   */
+  public PhongMaterial get(Color color, Style style) {
+    return materials.computeIfAbsent(new Key(quantize(color), style), MaterialRegistry::create);
+  }
+
+  private static Color quantize(Color color) {
+    return Color.rgb(
+        toByte(color.getRed()),
+        toByte(color.getGreen()),
+        toByte(color.getBlue()),
+        toByte(color.getOpacity()) / 255.0);
+  }
+
+  private static int toByte(double channel) {
+    return (int) Math.round(channel * 255);
+  }
+
+  private static PhongMaterial create(Key key) {
+    PhongMaterial material = new PhongMaterial(key.color());
+    if (key.style() == Style.SHINY) {
+      material.setSpecularColor(Color.WHITE);
+      material.setSpecularPower(SHINY_SPECULAR_POWER);
+    }
+    return material;
+  }
+
+  public int size() {
+    return materials.size();
+  }
+}
@@ -0,0 +1,257 @@
+package edu.umich.soar.svsviewer.scene;
+
+import com.github.quickhull3d.QuickHull3D;
+import edu.umich.soar.svsviewer.math.Vertices;
+import javafx.scene.shape.TriangleMesh;
+
+/** Builds JavaFX meshes from SVS vertex lists. */
+public class MeshBuilder {
+
+  /**
+   * Raw data for a {@link TriangleMesh} without texture coordinates.
+   *
+   * @param points flattened x/y/z coordinates
+   * @param faces three point indices per triangle
+   */
+  public record MeshData(float[] points, int[] faces) {
+    public TriangleMesh toTriangleMesh() {
+      // All 0's; we don't support textures
+      float[] dummyTextureCoords = new float[points.length / 3 * 2];
+
+      // flatten for Triangle Mesh, which expects point/texture index pairs
+      int[] jfxFaces = new int[faces.length * 2];
+      for (int i = 0; i < faces.length; i++) {
+        jfxFaces[i * 2] = faces[i];
+        jfxFaces[i * 2 + 1] = 0;
+      }
+
+      TriangleMesh mesh = new TriangleMesh();
+      mesh.getPoints().setAll(points);
+      mesh.getFaces().setAll(jfxFaces);
+      mesh.getTexCoords().setAll(dummyTextureCoords);
+      return mesh;
+    }
+  }
+
+  /** Half the size of the markers drawn for single vertices and line segments */
+  static final double POINT_RADIUS = 0.05;
+
+  // corners of a box are numbered by bits: 4 for max x, 2 for max y, 1 for max z
+  private static final int[] BOX_QUADS = {
+    0, 1, 3, 2, 4, 5, 7, 6, 0, 1, 5, 4, 2, 3, 7, 6, 0, 2, 6, 4, 1, 3, 7, 5
+  };
+
+  /**
+   * @return the mesh for an SVS vertex list: the convex hull, except for the shapes that {@link
+   *     #buildPrimitive(Vertices)} handles
+   */
+  public static MeshData build(Vertices vertices) {
+    MeshData primitive = buildPrimitive(vertices);
+    return primitive != null ? primitive : convexHull(vertices);
+  }
+
+  /**
+   * Builds the shapes that don't need a hull algorithm, or don't have a 3D hull at all, directly:
+   * axis-aligned boxes (nearly every object SVS sends is a scaled unit cube), and 1, 2 or 3
+   * vertices, which are drawn as a point, a line segment and a triangle. These take about as long
+   * as copying the vertices.
+   *
+   * @return null if the vertices need {@link #convexHull(Vertices)}
+   */
+  public static MeshData buildPrimitive(Vertices vertices) {
+    return switch (vertices.count()) {
+      case 0 -> throw new IllegalArgumentException("No vertices");
+      case 1 -> point(vertices.x(0), vertices.y(0), vertices.z(0));
+      case 2 -> segment(vertices);
+      case 3 -> triangle(vertices);
+      case 8 -> axisAlignedBox(vertices);
+      default -> null;
+    };
+  }
+
+  /**
+   * @return a box mesh if the 8 vertices are the corners of a box aligned with the axes, else null
+   */
+  private static MeshData axisAlignedBox(Vertices vertices) {
+    double[] coordinates = vertices.toArray();
+    double[] min = {coordinates[0], coordinates[1], coordinates[2]};
+    double[] max = min.clone();
+    for (int i = 3; i < coordinates.length; i++) {
+      min[i % 3] = Math.min(min[i % 3], coordinates[i]);
+      max[i % 3] = Math.max(max[i % 3], coordinates[i]);
+    }
+    // every vertex has to be a different corner
+    int corners = 0;
+    for (int point = 0; point < 8; point++) {
+      int corner = 0;
+      for (int axis = 0; axis < 3; axis++) {
+        double coordinate = coordinates[point * 3 + axis];
+        if (coordinate == max[axis] && min[axis] < max[axis]) {
+          corner |= 4 >> axis;
+        } else if (coordinate != min[axis]) {
+          return null;
+        }
+      }
+      corners |= 1 << corner;
+    }
+    if (corners != 0xFF) {
+      return null;
+    }
+    float[] points = new float[8 * 3];
+    for (int corner = 0; corner < 8; corner++) {
+      for (int axis = 0; axis < 3; axis++) {
+        points[corner * 3 + axis] = (float) ((corner & (4 >> axis)) != 0 ? max[axis] : min[axis]);
+      }
+    }
+    int[] faces = new int[BOX_QUADS.length / 4 * 6];
+    for (int quad = 0; quad < BOX_QUADS.length / 4; quad++) {
+      int a = BOX_QUADS[quad * 4];
+      int b = BOX_QUADS[quad * 4 + 1];
+      int c = BOX_QUADS[quad * 4 + 2];
+      int d = BOX_QUADS[quad * 4 + 3];
+      System.arraycopy(new int[] {a, b, c, a, c, d}, 0, faces, quad * 6, 6);
+    }
+    return orientOutward(points, faces);
+  }
+
+  /** An octahedron around the point, since a mesh can't show a point on its own */
+  private static MeshData point(double x, double y, double z) {
+    double r = POINT_RADIUS;
+    float[] points =
+        toFloats(x + r, y, z, x - r, y, z, x, y + r, z, x, y - r, z, x, y, z + r, x, y, z - r);
+    int[] faces = new int[8 * 3];
+    int face = 0;
+    for (int xIndex = 0; xIndex < 2; xIndex++) {
+      for (int yIndex = 2; yIndex < 4; yIndex++) {
+        for (int zIndex = 4; zIndex < 6; zIndex++) {
+          faces[face++] = xIndex;
+          faces[face++] = yIndex;
+          faces[face++] = zIndex;
+        }
+      }
+    }
+    return orientOutward(points, faces);
+  }
+
+  /** A thin triangular prism between the two vertices */
+  private static MeshData segment(Vertices vertices) {
+    double dx = vertices.x(1) - vertices.x(0);
+    double dy = vertices.y(1) - vertices.y(0);
+    double dz = vertices.z(1) - vertices.z(0);
+    if (dx == 0 && dy == 0 && dz == 0) {
+      return point(vertices.x(0), vertices.y(0), vertices.z(0));
+    }
+    // u and v are perpendicular to the segment and to each other; the cross product with the axis
+    // least aligned with the segment can't be close to 0
+    double ax = 0, ay = 0, az = 0;
+    if (Math.abs(dx) <= Math.abs(dy) && Math.abs(dx) <= Math.abs(dz)) {
+      ax = 1;
+    } else if (Math.abs(dy) <= Math.abs(dz)) {
+      ay = 1;
+    } else {
+      az = 1;
+    }
+    double[] u = normalized(dy * az - dz * ay, dz * ax - dx * az, dx * ay - dy * ax);
+    double[] v = normalized(dy * u[2] - dz * u[1], dz * u[0] - dx * u[2], dx * u[1] - dy * u[0]);
+    float[] points = new float[6 * 3];
+    for (int end = 0; end < 2; end++) {
+      for (int k = 0; k < 3; k++) {
+        double angle = k * 2 * Math.PI / 3;
+        double cos = Math.cos(angle) * POINT_RADIUS;
+        double sin = Math.sin(angle) * POINT_RADIUS;
+        int point = (end * 3 + k) * 3;
+        points[point] = (float) (vertices.x(end) + cos * u[0] + sin * v[0]);
+        points[point + 1] = (float) (vertices.y(end) + cos * u[1] + sin * v[1]);
+        points[point + 2] = (float) (vertices.z(end) + cos * u[2] + sin * v[2]);
+      }
+    }
+    int[] faces = new int[8 * 3];
+    // end caps
+    System.arraycopy(new int[] {0, 1, 2, 3, 4, 5}, 0, faces, 0, 6);
+    for (int k = 0; k < 3; k++) {
+      int next = (k + 1) % 3;
+      System.arraycopy(new int[] {k, next, next + 3, k, next + 3, k + 3}, 0, faces, 6 + k * 6, 6);
+    }
+    return orientOutward(points, faces);
+  }
+
+  /** The triangle with both windings, so that it can be seen from both sides */
+  private static MeshData triangle(Vertices vertices) {
+    return new MeshData(toFloats(vertices.toArray()), new int[] {0, 1, 2, 0, 2, 1});
+  }
+
+  /**
+   * Flips every face of a convex mesh whose normal points toward the center, so that all faces wind
+   * counterclockwise seen from outside, like the hull's.
+   */
+  private static MeshData orientOutward(float[] points, int[] faces) {
+    int pointCount = points.length / 3;
+    double[] center = new double[3];
+    for (int i = 0; i < points.length; i++) {
+      center[i % 3] += points[i] / (double) pointCount;
+    }
+    for (int face = 0; face < faces.length; face += 3) {
+      int a = faces[face] * 3;
+      int b = faces[face + 1] * 3;
+      int c = faces[face + 2] * 3;
+      double[] ab = {
+        points[b] - points[a], points[b + 1] - points[a + 1], points[b + 2] - points[a + 2]
+      };
+      double[] ac = {
+        points[c] - points[a], points[c + 1] - points[a + 1], points[c + 2] - points[a + 2]
+      };
+      double nx = ab[1] * ac[2] - ab[2] * ac[1];
+      double ny = ab[2] * ac[0] - ab[0] * ac[2];
+      double nz = ab[0] * ac[1] - ab[1] * ac[0];
+      double outward =
+          nx * (points[a] - center[0])
+              + ny * (points[a + 1] - center[1])
+              + nz * (points[a + 2] - center[2]);
+      if (outward < 0) {
+        int swap = faces[face + 1];
+        faces[face + 1] = faces[face + 2];
+        faces[face + 2] = swap;
+      }
+    }
+    return new MeshData(points, faces);
+  }
+
+  private static double[] normalized(double x, double y, double z) {
+    double length = Math.sqrt(x * x + y * y + z * z);
+    return new double[] {x / length, y / length, z / length};
+  }
+
+  private static float[] toFloats(double... values) {
+    float[] floats = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floats[i] = (float) values[i];
+    }
+    return floats;
+  }
+
+  // Reference: https://stackoverflow.com/a/61239299/474819
+  public static MeshData convexHull(Vertices vertices) {
+    // NOTE: as in svs_viewer, we don't handle polygons besides triangles
+    QuickHull3D hull = new QuickHull3D();
+    hull.build(vertices.toArray(), vertices.count());
+    // we need triangles to use TriangleMesh; generally we have very simple shapes in SVS, so we
+    // don't worry about thin triangles or other mentioned potential numerical stability issues
+    hull.triangulate();
+
+    int numHullVertices = hull.getNumVertices();
+    double[] hullCoordinates = new double[numHullVertices * 3];
+    hull.getVertices(hullCoordinates);
+
+    float[] points = toFloats(hullCoordinates);
+
+    //    [faceIndex][index] = vertexIndex
+    int[][] qh3Dfaces = hull.getFaces();
+    int[] faces = new int[qh3Dfaces.length * 3];
+    for (int i = 0; i < qh3Dfaces.length; i++) {
+      faces[i * 3] = qh3Dfaces[i][0];
+      faces[i * 3 + 1] = qh3Dfaces[i][1];
+      faces[i * 3 + 2] = qh3Dfaces[i][2];
+    }
+    return new MeshData(points, faces);
+  }
+}
@@ -0,0 +1,111 @@
+package edu.umich.soar.svsviewer.scene;
+
+import edu.umich.soar.svsviewer.math.Vertices;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Content-addressed cache of the meshes built from vertex lists. SVS typically sends the same
+ * vertex list for many geometries (e.g. a unit cube that is then scaled), so all of those can share
+ * one {@link TriangleMesh} and the hull only has to be computed once.
+ *
+ * <p>Most shapes SVS sends are boxes, which {@link MeshBuilder#buildPrimitive} builds right away.
+ * Other hulls are built on a pool of worker threads, so that large vertex sets don't stall the FX
+ * thread. The input thread requests them as soon as a command is parsed, and the FX thread picks up
+ * the finished mesh (usually the same future) when it applies the command. Building the {@link
+ * TriangleMesh} off the FX thread is fine because it isn't part of a live scene yet.
+ *
+ * <p>Cached meshes are shared between many {@code MeshView}s and must not be modified. The cache
+ * holds at most {@code capacity} meshes and evicts the least recently used one when full; meshes
+ * still in use by the scene stay alive through their views.
+ */
+public class MeshCache {
+  public static final int DEFAULT_CAPACITY = 256;
+  // leave a core for the FX and input threads
+  private static final int DEFAULT_WORKER_COUNT =
+      Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+  private final Map<Vertices, CompletableFuture<TriangleMesh>> meshes;
+  private final Executor workers;
+  private long hits = 0;
+  private long misses = 0;
+
+  public MeshCache() {
+    this(DEFAULT_CAPACITY, createWorkerPool(DEFAULT_WORKER_COUNT));
+  }
+
+  /**
+   * @param workers runs the hull computations
+   */
+  public MeshCache(int capacity, Executor workers) {
+    this.workers = workers;
+    this.meshes =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(
+              Map.Entry<Vertices, CompletableFuture<TriangleMesh>> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  private static ExecutorService createWorkerPool(int workerCount) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        workerCount,
+        runnable -> {
+          Thread thread = new Thread(runnable, "mesh-worker-" + threadCount.incrementAndGet());
+          // don't keep the application alive after the window is closed
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * May be called from any thread.
+   *
+   * @return the mesh for {@code vertices} (see {@link MeshBuilder#build}); starts building a hull
+   *     on a worker thread if it isn't cached or already being built. Completes exceptionally if
+   *     the vertices have no hull (e.g. 4 or more on a plane).
+   */
+  public synchronized CompletableFuture<TriangleMesh> getMesh(Vertices vertices) {
+    CompletableFuture<TriangleMesh> mesh = meshes.get(vertices);
+    if (mesh != null) {
+      hits++;
+      return mesh;
+    }
+    misses++;
+    // boxes and the like are built faster than they could be handed to a worker
+    MeshBuilder.MeshData primitive = MeshBuilder.buildPrimitive(vertices);
+    mesh =
+        primitive != null
+            ? CompletableFuture.completedFuture(primitive.toTriangleMesh())
+            : CompletableFuture.supplyAsync(
+                () -> MeshBuilder.convexHull(vertices).toTriangleMesh(), workers);
+    meshes.put(vertices, mesh);
+    return mesh;
+  }
+
+  public synchronized int size() {
+    return meshes.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "MeshCache[size=" + meshes.size() + ", hits=" + hits + ", misses=" + misses + "]";
+  }
+}
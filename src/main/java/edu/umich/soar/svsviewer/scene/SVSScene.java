@@ -1,11 +1,11 @@
 package edu.umich.soar.svsviewer.scene;
 
-import edu.umich.soar.svsviewer.util.WildcardMap;
+import edu.umich.soar.svsviewer.util.ConcurrentWildcardMap;
 import javafx.scene.Group;
 import javafx.scene.control.Label;
 
-public record SVSScene(String name, WildcardMap<Geometry> geometries, Group root) {
+public record SVSScene(String name, ConcurrentWildcardMap<Geometry> geometries, Group root) {
   public SVSScene(String name) {
-    this(name, new WildcardMap<>(), new Group());
+    this(name, new ConcurrentWildcardMap<>(), new Group());
   }
 }
@@ -0,0 +1,159 @@
+package edu.umich.soar.svsviewer.scene;
+
+import edu.umich.soar.svsviewer.util.AabbTree;
+import java.util.*;
+import java.util.function.Consumer;
+import javafx.geometry.Bounds;
+import javafx.scene.shape.Shape3D;
+import javafx.scene.transform.Affine;
+
+/**
+ * Keeps the scene-space bounding boxes of all geometries in one {@link AabbTree} per scene, for
+ * picking, radius and frustum queries that don't visit every node. A modified geometry is only
+ * marked here; its box is recomputed from its shape's local bounds and its transform once per
+ * frame, after all of the frame's changes were applied.
+ *
+ * <p>Geometries without a shape (or with a mesh that is still being built) aren't indexed. Only to
+ * be used from the FX thread.
+ */
+class SpatialIndex {
+  // moving a geometry by less than this doesn't change the tree
+  private static final double MARGIN = 0.1;
+
+  private final Map<SVSScene, AabbTree<Geometry>> trees = new HashMap<>();
+  private final Map<Geometry, Integer> ids = new HashMap<>();
+  // geometries whose boxes have to be recomputed
+  private final Set<Geometry> dirty = new LinkedHashSet<>();
+  // scratch space for the transformed box
+  private final double[] box = new double[6];
+
+  /**
+   * The geometry was added or changed; its box is recomputed in the next {@link #onFrame()}.
+   * Ignored for deleted geometries, which e.g. a late mesh could otherwise put back.
+   */
+  void modified(Geometry geometry) {
+    if (!geometry.isRemoved()) {
+      dirty.add(geometry);
+    }
+  }
+
+  void remove(Geometry geometry) {
+    dirty.remove(geometry);
+    Integer id = ids.remove(geometry);
+    if (id != null) {
+      trees.get(geometry.getParent()).remove(id);
+    }
+  }
+
+  void removeScene(SVSScene scene) {
+    trees.remove(scene);
+    ids.keySet().removeIf(geometry -> geometry.getParent() == scene);
+    dirty.removeIf(geometry -> geometry.getParent() == scene);
+  }
+
+  /** Called once per frame: updates the boxes of geometries that changed */
+  void onFrame() {
+    for (Geometry geometry : dirty) {
+      update(geometry);
+    }
+    dirty.clear();
+  }
+
+  private void update(Geometry geometry) {
+    Integer id = ids.get(geometry);
+    if (!computeBox(geometry, box)) {
+      if (id != null) {
+        ids.remove(geometry);
+        trees.get(geometry.getParent()).remove(id);
+      }
+      return;
+    }
+    if (id != null) {
+      trees.get(geometry.getParent()).update(id, box[0], box[1], box[2], box[3], box[4], box[5]);
+    } else {
+      AabbTree<Geometry> tree =
+          trees.computeIfAbsent(geometry.getParent(), scene -> new AabbTree<>(MARGIN));
+      ids.put(geometry, tree.insert(geometry, box[0], box[1], box[2], box[3], box[4], box[5]));
+    }
+  }
+
+  /**
+   * Writes the scene-space box of {@code geometry} to {@code box}: the box around its shape's local
+   * bounds after the geometry's transform. The shape's bounds are cached by JavaFX, and shared
+   * meshes share them.
+   *
+   * @return false if the geometry has nothing to index
+   */
+  static boolean computeBox(Geometry geometry, double[] box) {
+    Shape3D shape = geometry.getShape();
+    if (shape == null) {
+      return false;
+    }
+    Bounds local = shape.getBoundsInLocal();
+    if (local.isEmpty()) {
+      return false;
+    }
+    Affine t = geometry.getTransform();
+    double cx = local.getCenterX();
+    double cy = local.getCenterY();
+    double cz = local.getCenterZ();
+    double ex = local.getWidth() / 2;
+    double ey = local.getHeight() / 2;
+    double ez = local.getDepth() / 2;
+    // the center is transformed, and the extents are projected onto each axis
+    double x = t.getMxx() * cx + t.getMxy() * cy + t.getMxz() * cz + t.getTx();
+    double y = t.getMyx() * cx + t.getMyy() * cy + t.getMyz() * cz + t.getTy();
+    double z = t.getMzx() * cx + t.getMzy() * cy + t.getMzz() * cz + t.getTz();
+    double rx = Math.abs(t.getMxx()) * ex + Math.abs(t.getMxy()) * ey + Math.abs(t.getMxz()) * ez;
+    double ry = Math.abs(t.getMyx()) * ex + Math.abs(t.getMyy()) * ey + Math.abs(t.getMyz()) * ez;
+    double rz = Math.abs(t.getMzx()) * ex + Math.abs(t.getMzy()) * ey + Math.abs(t.getMzz()) * ez;
+    box[0] = x - rx;
+    box[1] = y - ry;
+    box[2] = z - rz;
+    box[3] = x + rx;
+    box[4] = y + ry;
+    box[5] = z + rz;
+    return true;
+  }
+
+  /**
+   * @see AabbTree#pick
+   */
+  Geometry pick(
+      SVSScene scene,
+      double originX,
+      double originY,
+      double originZ,
+      double directionX,
+      double directionY,
+      double directionZ) {
+    AabbTree<Geometry> tree = trees.get(scene);
+    if (tree == null) {
+      return null;
+    }
+    return tree.pick(
+        originX, originY, originZ, directionX, directionY, directionZ, Double.POSITIVE_INFINITY);
+  }
+
+  void queryRadius(
+      SVSScene scene, double x, double y, double z, double radius, Consumer<Geometry> action) {
+    AabbTree<Geometry> tree = trees.get(scene);
+    if (tree != null) {
+      tree.queryRadius(x, y, z, radius, action);
+    }
+  }
+
+  void queryFrustum(SVSScene scene, double[] planes, Consumer<Geometry> action) {
+    AabbTree<Geometry> tree = trees.get(scene);
+    if (tree != null) {
+      tree.queryFrustum(planes, action);
+    }
+  }
+
+  /**
+   * @return the number of indexed geometries
+   */
+  int size() {
+    return ids.size();
+  }
+}
@@ -0,0 +1,248 @@
+package edu.umich.soar.svsviewer.scene;
+
+import java.util.*;
+import javafx.collections.ObservableFloatArray;
+import javafx.collections.ObservableIntegerArray;
+import javafx.scene.Node;
+import javafx.scene.paint.Material;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Affine;
+
+/**
+ * Bakes geometries that haven't changed for a number of frames into one combined mesh per scene and
+ * material, so that JavaFX traverses, bounds-checks and draws a single node instead of hundreds of
+ * groups and mesh views. A baked geometry's group is taken out of the scene; as soon as the
+ * geometry is modified, it gets its group back and the rest of its batch is rebuilt without it.
+ *
+ * <p>Only mesh shapes are baked, and only their fill; wireframes keep their own nodes. Only to be
+ * used from the FX thread.
+ */
+class StaticBatcher {
+  // a batch of one would only add a node
+  private static final int MIN_BATCH_SIZE = 2;
+
+  private record BatchKey(SVSScene scene, Material material) {}
+
+  private static final class Batch {
+    final BatchKey key;
+    final Set<Geometry> members = new LinkedHashSet<>();
+    final MeshView view = new MeshView();
+
+    Batch(BatchKey key) {
+      this.key = key;
+      view.setMaterial(key.material());
+    }
+  }
+
+  // 0 for no batching
+  private int staticFrames = 0;
+  private long frame = 0;
+  private boolean visible = true;
+  // geometries that have their own nodes
+  private final Set<Geometry> loose = new LinkedHashSet<>();
+  private final Map<Geometry, Batch> batchOf = new HashMap<>();
+  private final Map<BatchKey, Batch> batches = new HashMap<>();
+  // batches whose members changed since their mesh was built; rebuilt once per frame
+  private final Set<Batch> dirty = new LinkedHashSet<>();
+
+  /**
+   * @param staticFrames how many frames a geometry has to stay unchanged to be baked; 0 turns
+   *     batching off and gives all geometries their own nodes back
+   */
+  void setStaticFrames(int staticFrames) {
+    this.staticFrames = staticFrames;
+    if (staticFrames <= 0) {
+      new ArrayList<>(batchOf.keySet()).forEach(this::unbake);
+      rebuildDirtyBatches();
+    }
+  }
+
+  /** Batch views follow the visibility of the geometries' fill groups */
+  void setVisible(boolean visible) {
+    this.visible = visible;
+    batches.values().forEach(batch -> batch.view.setVisible(visible));
+  }
+
+  void add(Geometry geometry) {
+    geometry.setLastModifiedFrame(frame);
+    loose.add(geometry);
+  }
+
+  /** The geometry is about to change; it gets its own nodes back if it was baked */
+  void modified(Geometry geometry) {
+    if (geometry.isRemoved()) {
+      return;
+    }
+    geometry.setLastModifiedFrame(frame);
+    unbake(geometry);
+  }
+
+  /** The geometry was deleted; its nodes have already been taken out of the scene */
+  void remove(Geometry geometry) {
+    loose.remove(geometry);
+    Batch batch = batchOf.remove(geometry);
+    if (batch != null) {
+      batch.members.remove(geometry);
+      dirty.add(batch);
+    }
+  }
+
+  /** The scene was deleted, along with all of its nodes */
+  void removeScene(SVSScene scene) {
+    loose.removeIf(geometry -> geometry.getParent() == scene);
+    batchOf.values().removeIf(batch -> batch.key.scene() == scene);
+    batches.keySet().removeIf(key -> key.scene() == scene);
+    dirty.removeIf(batch -> batch.key.scene() == scene);
+  }
+
+  /**
+   * Called once per frame: bakes geometries that have become static and rebuilds changed batches
+   */
+  void onFrame() {
+    frame++;
+    if (staticFrames > 0) {
+      bakeStaticGeometries();
+    }
+    rebuildDirtyBatches();
+  }
+
+  private void bakeStaticGeometries() {
+    Map<BatchKey, List<Geometry>> candidates = new HashMap<>();
+    for (Geometry geometry : loose) {
+      if (frame - geometry.getLastModifiedFrame() < staticFrames) {
+        continue;
+      }
+      if (geometry.getShape() instanceof MeshView view
+          && view.getMesh() != null
+          && view.getMaterial() != null) {
+        candidates
+            .computeIfAbsent(
+                new BatchKey(geometry.getParent(), view.getMaterial()), key -> new ArrayList<>())
+            .add(geometry);
+      }
+    }
+    Map<SVSScene, Set<Node>> detachedGroups = new HashMap<>();
+    candidates.forEach(
+        (key, geometries) -> {
+          Batch batch = batches.get(key);
+          if (batch == null) {
+            if (geometries.size() < MIN_BATCH_SIZE) {
+              return;
+            }
+            batch = new Batch(key);
+            batch.view.setVisible(visible);
+            batches.put(key, batch);
+            key.scene().root().getChildren().add(batch.view);
+          }
+          for (Geometry geometry : geometries) {
+            loose.remove(geometry);
+            batch.members.add(geometry);
+            batchOf.put(geometry, batch);
+            detachedGroups
+                .computeIfAbsent(key.scene(), scene -> new HashSet<>())
+                .add(geometry.getGroup());
+          }
+          dirty.add(batch);
+        });
+    // one change per children list
+    detachedGroups.forEach((scene, groups) -> scene.root().getChildren().removeAll(groups));
+  }
+
+  private void unbake(Geometry geometry) {
+    Batch batch = batchOf.remove(geometry);
+    if (batch == null) {
+      return;
+    }
+    batch.members.remove(geometry);
+    geometry.getParent().root().getChildren().add(geometry.getGroup());
+    loose.add(geometry);
+    dirty.add(batch);
+  }
+
+  private void rebuildDirtyBatches() {
+    for (Batch batch : dirty) {
+      if (batch.members.size() < MIN_BATCH_SIZE) {
+        for (Geometry member : batch.members) {
+          batchOf.remove(member);
+          batch.key.scene().root().getChildren().add(member.getGroup());
+          loose.add(member);
+        }
+        batch.members.clear();
+        batch.key.scene().root().getChildren().remove(batch.view);
+        batches.remove(batch.key);
+      } else {
+        List<TriangleMesh> meshes = new ArrayList<>(batch.members.size());
+        List<Affine> transforms = new ArrayList<>(batch.members.size());
+        for (Geometry member : batch.members) {
+          meshes.add((TriangleMesh) ((MeshView) member.getShape()).getMesh());
+          transforms.add(member.getTransform());
+        }
+        batch.view.setMesh(combine(meshes, transforms));
+      }
+    }
+    dirty.clear();
+  }
+
+  /**
+   * @return a single mesh with the triangles of all {@code meshes}, each transformed into the
+   *     scene's coordinates by the corresponding transform
+   */
+  static TriangleMesh combine(List<TriangleMesh> meshes, List<Affine> transforms) {
+    int pointCount = 0;
+    int faceCount = 0;
+    for (TriangleMesh mesh : meshes) {
+      pointCount += mesh.getPoints().size() / 3;
+      faceCount += mesh.getFaces().size() / 6;
+    }
+    float[] points = new float[pointCount * 3];
+    // point/texture index pairs; every face uses the single texture coordinate
+    int[] faces = new int[faceCount * 6];
+    int pointOffset = 0;
+    int faceOffset = 0;
+    float[] meshPoints = null;
+    int[] meshFaces = null;
+    for (int m = 0; m < meshes.size(); m++) {
+      ObservableFloatArray sourcePoints = meshes.get(m).getPoints();
+      ObservableIntegerArray sourceFaces = meshes.get(m).getFaces();
+      meshPoints = sourcePoints.toArray(meshPoints);
+      meshFaces = sourceFaces.toArray(meshFaces);
+      Affine t = transforms.get(m);
+      int meshPointCount = sourcePoints.size() / 3;
+      for (int p = 0; p < meshPointCount; p++) {
+        double x = meshPoints[p * 3];
+        double y = meshPoints[p * 3 + 1];
+        double z = meshPoints[p * 3 + 2];
+        int out = (pointOffset + p) * 3;
+        points[out] = (float) (t.getMxx() * x + t.getMxy() * y + t.getMxz() * z + t.getTx());
+        points[out + 1] = (float) (t.getMyx() * x + t.getMyy() * y + t.getMyz() * z + t.getTy());
+        points[out + 2] = (float) (t.getMzx() * x + t.getMzy() * y + t.getMzz() * z + t.getTz());
+      }
+      int meshFaceValues = sourceFaces.size();
+      for (int i = 0; i < meshFaceValues; i += 2) {
+        faces[faceOffset + i] = meshFaces[i] + pointOffset;
+      }
+      pointOffset += meshPointCount;
+      faceOffset += meshFaceValues;
+    }
+    TriangleMesh combined = new TriangleMesh();
+    combined.getPoints().setAll(points);
+    combined.getTexCoords().setAll(0, 0);
+    combined.getFaces().setAll(faces);
+    return combined;
+  }
+
+  /**
+   * @return the number of geometries currently baked
+   */
+  int bakedCount() {
+    return batchOf.size();
+  }
+
+  /**
+   * @return the number of combined meshes
+   */
+  int batchCount() {
+    return batches.size();
+  }
+}
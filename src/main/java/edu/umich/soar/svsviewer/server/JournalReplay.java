@@ -0,0 +1,147 @@
+package edu.umich.soar.svsviewer.server;
+
+import static edu.umich.soar.svsviewer.server.JournalWriter.HEADER_SIZE;
+import static edu.umich.soar.svsviewer.server.JournalWriter.MAGIC;
+import static edu.umich.soar.svsviewer.server.JournalWriter.RECORD_HEADER_SIZE;
+import static edu.umich.soar.svsviewer.server.JournalWriter.VERSION;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Feeds the lines of a journal recorded by {@link JournalWriter} to an input processor, as if they
+ * had just been received by the {@link Server}. Lines are delivered with their original spacing in
+ * time, divided by the replay speed; with {@link #MAX_SPEED} they are delivered as fast as the
+ * processor accepts them. The file is read through memory mappings, so replaying doesn't copy it
+ * through an intermediate stream buffer.
+ */
+public class JournalReplay implements Runnable {
+  public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+  // files larger than this are mapped piece by piece; a single record always fits
+  private static final long MAX_MAPPING_SIZE = Integer.MAX_VALUE;
+
+  private final Path path;
+  private final double speed;
+  private final Consumer<String> inputProcessor;
+  private volatile boolean stopped = false;
+
+  /**
+   * @param speed how many times faster than recorded to replay; {@link #MAX_SPEED} to not wait
+   *     between lines at all
+   */
+  public JournalReplay(Path path, double speed, Consumer<String> inputProcessor) {
+    if (!(speed > 0)) {
+      throw new IllegalArgumentException("Replay speed must be positive, but was " + speed);
+    }
+    this.path = path;
+    this.speed = speed;
+    this.inputProcessor = inputProcessor;
+  }
+
+  /** Stops the replay after the line currently being processed. */
+  public void stop() {
+    stopped = true;
+  }
+
+  @Override
+  public void run() {
+    try {
+      long start = System.nanoTime();
+      long lines = replay();
+      System.out.printf(
+          "Replayed %d lines from %s in %.3f s%n",
+          lines, path, (System.nanoTime() - start) / 1_000_000_000d);
+    } catch (IOException e) {
+      System.out.println("Could not replay " + path + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Replays the journal on the calling thread.
+   *
+   * @return the number of lines replayed
+   * @throws IOException if the file can't be read or is not a journal
+   */
+  public long replay() throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE) {
+        throw new IOException("Not a journal file");
+      }
+      long mappedAt = 0;
+      MappedByteBuffer buffer = map(channel, mappedAt, size);
+      byte[] magic = new byte[MAGIC.length];
+      buffer.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IOException("Not a journal file");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported journal version " + version);
+      }
+
+      byte[] line = new byte[256];
+      long lines = 0;
+      long firstTimestamp = 0;
+      long replayStart = 0;
+      while (!stopped) {
+        long recordStart = mappedAt + buffer.position();
+        if (recordStart == size) {
+          break;
+        }
+        if (size - recordStart < RECORD_HEADER_SIZE) {
+          System.out.println("Ignoring truncated record at the end of " + path);
+          break;
+        }
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+          mappedAt = recordStart;
+          buffer = map(channel, mappedAt, size);
+        }
+        long timestamp = buffer.getLong();
+        int length = buffer.getInt();
+        if (length < 0 || size - recordStart - RECORD_HEADER_SIZE < length) {
+          System.out.println("Ignoring truncated record at the end of " + path);
+          break;
+        }
+        if (buffer.remaining() < length) {
+          mappedAt = recordStart + RECORD_HEADER_SIZE;
+          buffer = map(channel, mappedAt, size);
+        }
+        if (line.length < length) {
+          line = new byte[Math.max(length, 2 * line.length)];
+        }
+        buffer.get(line, 0, length);
+
+        if (lines == 0) {
+          firstTimestamp = timestamp;
+          replayStart = System.nanoTime();
+        } else if (speed != MAX_SPEED) {
+          waitUntil(replayStart + (long) ((timestamp - firstTimestamp) / speed));
+        }
+        inputProcessor.accept(new String(line, 0, length, StandardCharsets.UTF_8));
+        lines++;
+      }
+      return lines;
+    }
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long position, long fileSize)
+      throws IOException {
+    long length = Math.min(fileSize - position, MAX_MAPPING_SIZE);
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+  }
+
+  private void waitUntil(long deadlineNanos) {
+    long remaining;
+    while (!stopped && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package edu.umich.soar.svsviewer.server;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records received SGEL lines to a journal file, so that a session can be reproduced later with
+ * {@link JournalReplay}.
+ *
+ * <p>A journal starts with {@link #MAGIC} and the format version (int), followed by one record per
+ * line: the nanoseconds since recording started (long), the length of the line in bytes (int) and
+ * the line's UTF-8 bytes without its terminator. Numbers are big-endian.
+ */
+public class JournalWriter implements Closeable {
+  static final byte[] MAGIC = "SGELJRNL".getBytes(StandardCharsets.US_ASCII);
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = MAGIC.length + Integer.BYTES;
+  static final int RECORD_HEADER_SIZE = Long.BYTES + Integer.BYTES;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path path;
+  private final DataOutputStream out;
+  private final long startNanos;
+
+  /** Creates a new journal at {@code path}, replacing any existing file. */
+  public JournalWriter(Path path) throws IOException {
+    this.path = path;
+    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+    out.write(MAGIC);
+    out.writeInt(VERSION);
+    startNanos = System.nanoTime();
+  }
+
+  /** Records the UTF-8 encoded line in {@code bytes[offset, offset + length)}. */
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    out.writeLong(System.nanoTime() - startNanos);
+    out.writeInt(length);
+    out.write(bytes, offset, length);
+  }
+
+  public void write(String line) throws IOException {
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    write(bytes, 0, bytes.length);
+  }
+
+  /** Writes buffered records to the file, so that they survive if the viewer is killed. */
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+}
@@ -1,31 +1,74 @@
 package edu.umich.soar.svsviewer.server;
 
-import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.function.Consumer;
 
-import javafx.application.Platform;
-import javafx.beans.property.BooleanProperty;
-import javafx.beans.property.SimpleBooleanProperty;
-import javafx.concurrent.Task;
+/**
+ * Listens for SGEL clients (Soar agents running {@code svs connect_viewer <port>}). A single thread
+ * multiplexes any number of client connections with a {@link Selector}, so several agents can
+ * stream to the same viewer at once without waiting on each other. The listening socket is bound
+ * once and stays open, so clients can disconnect and reconnect freely.
+ *
+ * <p>The server doesn't depend on JavaFX; all callbacks are invoked on the server thread, and it is
+ * up to the receiver to hand them over to another thread if necessary.
+ */
+public class Server implements Runnable {
 
-public class Server extends Task<Void> {
+  // how long select() may block before we check for cancellation
+  private static final long SELECT_TIMEOUT_MILLIS = 250;
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  // Clients aren't required to read our acknowledgements; stop queueing them for a client that
+  // doesn't, instead of letting the queue grow forever.
+  private static final int MAX_PENDING_OUTPUT_BYTES = 1024 * 1024;
+  // far longer than any sensible SGEL line; a client that sends more without a line break is
+  // disconnected, instead of buffering its output forever
+  private static final int MAX_LINE_BYTES = 8 * 1024 * 1024;
+  private static final byte[] ACKNOWLEDGEMENT_PREFIX =
+      "Received: ".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] LINE_SEPARATOR =
+      System.lineSeparator().getBytes(StandardCharsets.UTF_8);
 
   private final int portNumber;
 
   private final Consumer<String> inputProcessor;
   private final Consumer<String> showMessage;
+  // records every received line if not null
+  private JournalWriter journal;
 
-  private final BooleanProperty clientConnected = new SimpleBooleanProperty(false);
+  private volatile boolean stopped = false;
+  private volatile boolean clientConnected = false;
+  private Consumer<Boolean> connectionListener = connected -> {};
+  // only touched from the server thread
+  private int connectedClients = 0;
 
   public Server(int portNumber, Consumer<String> inputProcessor, Consumer<String> showMessage) {
+    this(portNumber, inputProcessor, showMessage, null);
+  }
+
+  /**
+   * @param journal if not null, every received line is recorded to it; it is closed when the server
+   *     stops
+   */
+  public Server(
+      int portNumber,
+      Consumer<String> inputProcessor,
+      Consumer<String> showMessage,
+      JournalWriter journal) {
     this.portNumber = portNumber;
     this.inputProcessor = inputProcessor;
-    // we run on a different thread, so messages need to be directed back to main thread
-    this.showMessage = (s) -> Platform.runLater(() -> showMessage.accept(s));
+    this.journal = journal;
+    this.showMessage = showMessage;
   }
 
   public static void main(String[] args) {
@@ -33,49 +76,287 @@ public class Server extends Task<Void> {
     server.run();
   }
 
+  /** Per-client read and write state, attached to the client's {@link SelectionKey}. */
+  private static class ClientConnection {
+    private final SocketChannel channel;
+    private final SocketAddress address;
+    // bytes of a line that has not been terminated yet
+    private byte[] partialLine = new byte[256];
+    private int partialLineLength = 0;
+    // a '\r' ended the last line; skip a directly following '\n'
+    private boolean skipLineFeed = false;
+    private final ArrayDeque<ByteBuffer> pendingOutput = new ArrayDeque<>();
+    private int pendingOutputBytes = 0;
+    private boolean droppingOutput = false;
+
+    private ClientConnection(SocketChannel channel) throws IOException {
+      this.channel = channel;
+      this.address = channel.getRemoteAddress();
+    }
+
+    private void appendToPartialLine(byte[] bytes, int offset, int length) throws IOException {
+      if (partialLineLength + length > MAX_LINE_BYTES) {
+        throw new IOException(
+            "Client " + address + " sent a line longer than " + MAX_LINE_BYTES + " bytes");
+      }
+      if (partialLineLength + length > partialLine.length) {
+        partialLine =
+            Arrays.copyOf(
+                partialLine, Math.max(partialLine.length * 2, partialLineLength + length));
+      }
+      System.arraycopy(bytes, offset, partialLine, partialLineLength, length);
+      partialLineLength += length;
+    }
+  }
+
   /**
-   * Continually waits for a connection to {@link #portNumber}.
-   *
-   * @return
+   * Continually accepts connections on {@link #portNumber} and reads lines from all connected
+   * clients until {@link #stop() stopped}.
    */
   @Override
-  protected Void call() {
-    while (true) {
-      System.out.println("Listening on port " + portNumber + " for a connection...");
-      //      showMessage.accept("Listening on port " + portNumber + " for a connection...");
-      try (ServerSocket serverSocket = new ServerSocket(portNumber);
-          Socket clientSocket = serverSocket.accept();
-          // TODO: use BufferedWriter instead so that exceptions aren't swallowed
-          PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-          BufferedReader in =
-              new BufferedReader(new InputStreamReader(clientSocket.getInputStream())); ) {
-        System.out.println("Connection established");
-        clientConnected.set(true);
-        showMessage.accept("Client connected");
-        String inputLine;
-
-        while (!isCancelled() && (inputLine = in.readLine()) != null) {
-          inputProcessor.accept(inputLine);
-          out.println("Received: " + inputLine);
+  public void run() {
+    ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    try (Selector selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+      try {
+        serverChannel.bind(new InetSocketAddress(portNumber));
+      } catch (IOException e) {
+        System.out.println("Could not listen on port " + portNumber + ": " + e.getMessage());
+        showMessage.accept("Could not listen on port " + portNumber + ": " + e.getMessage());
+        return;
+      }
+      serverChannel.configureBlocking(false);
+      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+      System.out.println("Listening on port " + portNumber + " for connections...");
+
+      while (!stopped) {
+        selector.select(SELECT_TIMEOUT_MILLIS);
+        Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext()) {
+          SelectionKey key = selectedKeys.next();
+          selectedKeys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept(serverChannel, selector);
+            continue;
+          }
+          ClientConnection client = (ClientConnection) key.attachment();
+          try {
+            if (key.isReadable()) {
+              read(key, client, readBuffer);
+              flushJournal();
+            }
+            if (key.isValid() && key.isWritable()) {
+              write(key, client);
+            }
+          } catch (IOException e) {
+            System.out.println(e.getMessage());
+            disconnect(key, client);
+          }
+        }
+      }
+
+      for (SelectionKey key : selector.keys()) {
+        if (key.attachment() instanceof ClientConnection client) {
+          disconnect(key, client);
         }
+      }
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    } finally {
+      closeJournal();
+    }
+    System.out.println("Server stopped");
+  }
+
+  /** Makes the server close all connections and return from {@link #run()} shortly. */
+  public void stop() {
+    stopped = true;
+  }
+
+  private void accept(ServerSocketChannel serverChannel, Selector selector) {
+    SocketChannel channel = null;
+    try {
+      channel = serverChannel.accept();
+      if (channel == null) {
+        return;
+      }
+      channel.configureBlocking(false);
+      channel.register(selector, SelectionKey.OP_READ, new ClientConnection(channel));
+    } catch (IOException e) {
+      System.out.println("Failed to accept connection: " + e.getMessage());
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException closeException) {
+          System.out.println(closeException.getMessage());
+        }
+      }
+      return;
+    }
+    connectedClients++;
+    System.out.println("Connection established (" + connectedClients + " connected)");
+    setClientConnected(true);
+    showMessage.accept("Client connected");
+  }
+
+  /**
+   * Read whatever is available from the client and pass each completed line to {@link
+   * #inputProcessor}. Lines may be terminated by {@code \n}, {@code \r} or {@code \r\n}, as with
+   * {@link java.io.BufferedReader#readLine()}.
+   */
+  private void read(SelectionKey key, ClientConnection client, ByteBuffer readBuffer)
+      throws IOException {
+    readBuffer.clear();
+    int bytesRead = client.channel.read(readBuffer);
+    if (bytesRead < 0) {
+      // end of stream; an unterminated last line still counts
+      if (client.partialLineLength > 0) {
+        processLine(key, client, client.partialLine, 0, client.partialLineLength);
+        client.partialLineLength = 0;
+      }
+      disconnect(key, client);
+      return;
+    }
+    byte[] bytes = readBuffer.array();
+    int lineStart = 0;
+    for (int i = 0; i < bytesRead; i++) {
+      byte b = bytes[i];
+      if (b != '\n' && b != '\r') {
+        client.skipLineFeed = false;
+        continue;
+      }
+      if (b == '\n' && client.skipLineFeed) {
+        client.skipLineFeed = false;
+        lineStart = i + 1;
+        continue;
+      }
+      client.skipLineFeed = b == '\r';
+      if (client.partialLineLength > 0) {
+        client.appendToPartialLine(bytes, lineStart, i - lineStart);
+        processLine(key, client, client.partialLine, 0, client.partialLineLength);
+        client.partialLineLength = 0;
+      } else {
+        processLine(key, client, bytes, lineStart, i - lineStart);
+      }
+      lineStart = i + 1;
+    }
+    if (lineStart < bytesRead) {
+      client.appendToPartialLine(bytes, lineStart, bytesRead - lineStart);
+    }
+  }
+
+  private void processLine(
+      SelectionKey key, ClientConnection client, byte[] bytes, int offset, int length) {
+    if (journal != null) {
+      try {
+        journal.write(bytes, offset, length);
       } catch (IOException e) {
-        System.out.println(e.getMessage());
-      } finally {
-        //  TODO: would prefer that this stay shown in the bottom corner of the pane, in case
-        // the user forgets what to do next.
-        //        showMessage.accept("Client disconnected. Reconnect with svs connect_viewer
-        // 12122.");
-        System.out.println("Server connection ended");
-        clientConnected.set(false);
+        stopRecording(e);
       }
     }
+    String inputLine = new String(bytes, offset, length, StandardCharsets.UTF_8);
+    inputProcessor.accept(inputLine);
+    acknowledge(key, client, bytes, offset, length);
   }
 
-  public boolean isClientConnected() {
-    return clientConnected.get();
+  private void acknowledge(
+      SelectionKey key, ClientConnection client, byte[] bytes, int offset, int length) {
+    int ackLength = ACKNOWLEDGEMENT_PREFIX.length + length + LINE_SEPARATOR.length;
+    if (client.pendingOutputBytes + ackLength > MAX_PENDING_OUTPUT_BYTES) {
+      if (!client.droppingOutput) {
+        System.out.println(
+            "Client " + client.address + " is not reading acknowledgements; dropping them");
+        client.droppingOutput = true;
+      }
+      return;
+    }
+    ByteBuffer ack = ByteBuffer.allocate(ackLength);
+    ack.put(ACKNOWLEDGEMENT_PREFIX).put(bytes, offset, length).put(LINE_SEPARATOR).flip();
+    client.pendingOutput.add(ack);
+    client.pendingOutputBytes += ackLength;
+    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
   }
 
-  public BooleanProperty clientConnectedProperty() {
+  private void write(SelectionKey key, ClientConnection client) throws IOException {
+    while (!client.pendingOutput.isEmpty()) {
+      ByteBuffer output = client.pendingOutput.peek();
+      int written = client.channel.write(output);
+      client.pendingOutputBytes -= written;
+      if (output.hasRemaining()) {
+        // socket buffer is full; wait until the channel is writable again
+        return;
+      }
+      client.pendingOutput.poll();
+    }
+    client.droppingOutput = false;
+    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+  }
+
+  private void disconnect(SelectionKey key, ClientConnection client) {
+    key.cancel();
+    try {
+      client.channel.close();
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+    connectedClients--;
+    //  TODO: would prefer that this stay shown in the bottom corner of the pane, in case
+    // the user forgets what to do next.
+    //        showMessage.accept("Client disconnected. Reconnect with svs connect_viewer
+    // 12122.");
+    System.out.println(
+        "Server connection with " + client.address + " ended (" + connectedClients + " connected)");
+    setClientConnected(connectedClients > 0);
+  }
+
+  private void setClientConnected(boolean connected) {
+    if (connected != clientConnected) {
+      clientConnected = connected;
+      connectionListener.accept(connected);
+    }
+  }
+
+  private void flushJournal() {
+    if (journal != null) {
+      try {
+        journal.flush();
+      } catch (IOException e) {
+        stopRecording(e);
+      }
+    }
+  }
+
+  private void stopRecording(IOException cause) {
+    String message = "Could not write to journal " + journal.getPath() + ": " + cause.getMessage();
+    System.out.println(message);
+    showMessage.accept(message);
+    closeJournal();
+  }
+
+  private void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+    journal = null;
+  }
+
+  public boolean isClientConnected() {
     return clientConnected;
   }
+
+  /**
+   * @param connectionListener called on the server thread with true when the first client connects
+   *     and with false when the last one disconnects
+   */
+  public void setConnectionListener(Consumer<Boolean> connectionListener) {
+    this.connectionListener = connectionListener;
+  }
 }
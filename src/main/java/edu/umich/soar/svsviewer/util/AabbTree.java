@@ -0,0 +1,554 @@
+package edu.umich.soar.svsviewer.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A bounding volume hierarchy of axis-aligned boxes that is updated incrementally, as in Box2D's
+ * dynamic tree: items are inserted next to the sibling that grows the tree's surface area the
+ * least, and subtrees are rotated to keep the tree balanced, so that queries take logarithmic time
+ * no matter in which order items arrive.
+ *
+ * <p>Internal nodes hold boxes enlarged by a margin ("fat" boxes), so that an item that moves a
+ * little stays inside its box and {@link #update} doesn't have to touch the tree. Queries still
+ * test the exact box of every item.
+ *
+ * <p>Nodes live in parallel arrays and are addressed by index; items are identified by the id that
+ * {@link #insert} returns. Not thread-safe.
+ */
+public class AabbTree<T> {
+  private static final int NULL = -1;
+  private static final int INITIAL_CAPACITY = 16;
+  // per node in boxes: min x, y, z, max x, y, z
+  private static final int BOX_SIZE = 6;
+
+  private final double margin;
+  // fat boxes of all nodes, and exact boxes of leaves
+  private double[] boxes;
+  private double[] exactBoxes;
+  // parent; next free node for free nodes
+  private int[] parent;
+  private int[] child1;
+  private int[] child2;
+  // 0 for leaves, -1 for free nodes
+  private int[] height;
+  private Object[] items;
+  private int root = NULL;
+  private int freeList = NULL;
+  private int nodeCount = 0;
+  private int size = 0;
+  // traversal stack, reused between queries
+  private int[] stack = new int[64];
+  // entry distances of the nodes on the stack, for picking
+  private double[] stackDistances = new double[64];
+
+  /**
+   * @param margin how far boxes are enlarged in every direction; larger values mean fewer tree
+   *     updates for moving items but more false candidates in queries
+   */
+  public AabbTree(double margin) {
+    this.margin = margin;
+    boxes = new double[INITIAL_CAPACITY * BOX_SIZE];
+    exactBoxes = new double[INITIAL_CAPACITY * BOX_SIZE];
+    parent = new int[INITIAL_CAPACITY];
+    child1 = new int[INITIAL_CAPACITY];
+    child2 = new int[INITIAL_CAPACITY];
+    height = new int[INITIAL_CAPACITY];
+    items = new Object[INITIAL_CAPACITY];
+  }
+
+  /**
+   * @return the id of the new item, for {@link #update} and {@link #remove}
+   */
+  public int insert(
+      T item, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+    int leaf = allocateNode();
+    items[leaf] = item;
+    height[leaf] = 0;
+    child1[leaf] = NULL;
+    child2[leaf] = NULL;
+    setExactBox(leaf, minX, minY, minZ, maxX, maxY, maxZ);
+    insertLeaf(leaf);
+    size++;
+    return leaf;
+  }
+
+  /**
+   * Moves the item {@code id} to a new box.
+   *
+   * @return whether the tree had to change; not if the new box is still inside the old fat box
+   */
+  public boolean update(
+      int id, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+    checkItem(id);
+    int b = id * BOX_SIZE;
+    boolean contained =
+        boxes[b] <= minX
+            && boxes[b + 1] <= minY
+            && boxes[b + 2] <= minZ
+            && boxes[b + 3] >= maxX
+            && boxes[b + 4] >= maxY
+            && boxes[b + 5] >= maxZ;
+    if (contained) {
+      exactBoxes[b] = minX;
+      exactBoxes[b + 1] = minY;
+      exactBoxes[b + 2] = minZ;
+      exactBoxes[b + 3] = maxX;
+      exactBoxes[b + 4] = maxY;
+      exactBoxes[b + 5] = maxZ;
+      return false;
+    }
+    removeLeaf(id);
+    setExactBox(id, minX, minY, minZ, maxX, maxY, maxZ);
+    insertLeaf(id);
+    return true;
+  }
+
+  public void remove(int id) {
+    checkItem(id);
+    removeLeaf(id);
+    freeNode(id);
+    size--;
+  }
+
+  @SuppressWarnings("unchecked")
+  public T get(int id) {
+    checkItem(id);
+    return (T) items[id];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of levels below the root; at most about 1.44 log2(size) for the balanced
+   *     tree
+   */
+  public int height() {
+    return root == NULL ? 0 : height[root];
+  }
+
+  /** Passes every item whose box intersects the sphere to {@code action} */
+  public void queryRadius(double x, double y, double z, double radius, Consumer<? super T> action) {
+    double radiusSquared = radius * radius;
+    int top = push(0, root);
+    while (top > 0) {
+      int node = stack[--top];
+      boolean leaf = height[node] == 0;
+      if (distanceSquared(leaf ? exactBoxes : boxes, node, x, y, z) > radiusSquared) {
+        continue;
+      }
+      if (leaf) {
+        action.accept(item(node));
+      } else {
+        top = push(top, child1[node]);
+        top = push(top, child2[node]);
+      }
+    }
+  }
+
+  /**
+   * Passes every item whose box is at least partly inside all of the planes to {@code action}. This
+   * is a view frustum culling query when the planes bound the frustum, but any convex volume works.
+   *
+   * @param planes {@code a b c d} per plane; a point is inside if {@code a*x + b*y + c*z + d >= 0}
+   */
+  public void queryFrustum(double[] planes, Consumer<? super T> action) {
+    int top = push(0, root);
+    while (top > 0) {
+      int node = stack[--top];
+      boolean leaf = height[node] == 0;
+      if (!intersectsPlanes(leaf ? exactBoxes : boxes, node, planes)) {
+        continue;
+      }
+      if (leaf) {
+        action.accept(item(node));
+      } else {
+        top = push(top, child1[node]);
+        top = push(top, child2[node]);
+      }
+    }
+  }
+
+  /**
+   * @return the item whose box the ray enters first within {@code maxDistance} (in multiples of the
+   *     direction's length), or null. Boxes that contain the origin are entered at distance 0.
+   */
+  public T pick(
+      double originX,
+      double originY,
+      double originZ,
+      double directionX,
+      double directionY,
+      double directionZ,
+      double maxDistance) {
+    if (root == NULL) {
+      return null;
+    }
+    // infinities for axes the ray is parallel to make the slab test work out
+    double inverseX = 1 / directionX;
+    double inverseY = 1 / directionY;
+    double inverseZ = 1 / directionZ;
+    double best = maxDistance;
+    int bestNode = NULL;
+    int top =
+        push(
+            0,
+            root,
+            entryDistance(
+                height[root] == 0 ? exactBoxes : boxes,
+                root,
+                originX,
+                originY,
+                originZ,
+                inverseX,
+                inverseY,
+                inverseZ));
+    while (top > 0) {
+      int node = stack[--top];
+      double distance = stackDistances[top];
+      // misses are skipped, as are subtrees that can't beat the nearest hit so far
+      if (!(distance >= 0 && distance <= best)) {
+        continue;
+      }
+      if (height[node] == 0) {
+        best = distance;
+        bestNode = node;
+        continue;
+      }
+      int c1 = child1[node];
+      int c2 = child2[node];
+      double d1 =
+          entryDistance(
+              height[c1] == 0 ? exactBoxes : boxes,
+              c1,
+              originX,
+              originY,
+              originZ,
+              inverseX,
+              inverseY,
+              inverseZ);
+      double d2 =
+          entryDistance(
+              height[c2] == 0 ? exactBoxes : boxes,
+              c2,
+              originX,
+              originY,
+              originZ,
+              inverseX,
+              inverseY,
+              inverseZ);
+      // the nearer child is popped first, so that its hits prune the farther one
+      if (d1 <= d2) {
+        top = push(top, c2, d2);
+        top = push(top, c1, d1);
+      } else {
+        top = push(top, c1, d1);
+        top = push(top, c2, d2);
+      }
+    }
+    return bestNode == NULL ? null : item(bestNode);
+  }
+
+  private void insertLeaf(int leaf) {
+    if (root == NULL) {
+      root = leaf;
+      parent[leaf] = NULL;
+      return;
+    }
+    // descend to the sibling with the lowest cost: the area of the new parent, plus the area that
+    // every ancestor gains
+    int index = root;
+    while (height[index] > 0) {
+      double area = surfaceArea(index);
+      double combinedArea = combinedSurfaceArea(index, leaf);
+      double cost = 2 * combinedArea;
+      double inheritanceCost = 2 * (combinedArea - area);
+      double cost1 = descendCost(child1[index], leaf) + inheritanceCost;
+      double cost2 = descendCost(child2[index], leaf) + inheritanceCost;
+      if (cost < cost1 && cost < cost2) {
+        break;
+      }
+      index = cost1 < cost2 ? child1[index] : child2[index];
+    }
+    int sibling = index;
+
+    int oldParent = parent[sibling];
+    int newParent = allocateNode();
+    parent[newParent] = oldParent;
+    items[newParent] = null;
+    union(newParent, sibling, leaf);
+    height[newParent] = height[sibling] + 1;
+    if (oldParent != NULL) {
+      replaceChild(oldParent, sibling, newParent);
+    } else {
+      root = newParent;
+    }
+    child1[newParent] = sibling;
+    child2[newParent] = leaf;
+    parent[sibling] = newParent;
+    parent[leaf] = newParent;
+
+    refitAncestors(parent[leaf]);
+  }
+
+  private double descendCost(int child, int leaf) {
+    double combined = combinedSurfaceArea(child, leaf);
+    return height[child] == 0 ? combined : combined - surfaceArea(child);
+  }
+
+  private void removeLeaf(int leaf) {
+    if (leaf == root) {
+      root = NULL;
+      return;
+    }
+    int oldParent = parent[leaf];
+    int grandparent = parent[oldParent];
+    int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+    if (grandparent != NULL) {
+      replaceChild(grandparent, oldParent, sibling);
+      parent[sibling] = grandparent;
+      freeNode(oldParent);
+      refitAncestors(grandparent);
+    } else {
+      root = sibling;
+      parent[sibling] = NULL;
+      freeNode(oldParent);
+    }
+  }
+
+  /** Rebalance and recompute boxes and heights from {@code index} up to the root */
+  private void refitAncestors(int index) {
+    while (index != NULL) {
+      index = balance(index);
+      int c1 = child1[index];
+      int c2 = child2[index];
+      height[index] = 1 + Math.max(height[c1], height[c2]);
+      union(index, c1, c2);
+      index = parent[index];
+    }
+  }
+
+  /**
+   * Rotates the taller child of {@code a} up if the heights of its children differ by more than 1.
+   *
+   * @return the node that is now at {@code a}'s position
+   */
+  private int balance(int a) {
+    if (height[a] < 2) {
+      return a;
+    }
+    int b = child1[a];
+    int c = child2[a];
+    int balance = height[c] - height[b];
+    if (balance > 1) {
+      rotateUp(a, c, b, false);
+      return c;
+    }
+    if (balance < -1) {
+      rotateUp(a, b, c, true);
+      return b;
+    }
+    return a;
+  }
+
+  /**
+   * Moves {@code up}, the taller child of {@code a}, into {@code a}'s place. {@code a} becomes a
+   * child of {@code up}, and keeps {@code other} along with the shorter child of {@code up}.
+   *
+   * @param upIsFirst whether {@code up} was {@code a}'s first child
+   */
+  private void rotateUp(int a, int up, int other, boolean upIsFirst) {
+    int f = child1[up];
+    int g = child2[up];
+    child1[up] = a;
+    parent[up] = parent[a];
+    parent[a] = up;
+    if (parent[up] != NULL) {
+      replaceChild(parent[up], a, up);
+    } else {
+      root = up;
+    }
+    int taller = height[f] > height[g] ? f : g;
+    int shorter = taller == f ? g : f;
+    child2[up] = taller;
+    if (upIsFirst) {
+      child1[a] = shorter;
+    } else {
+      child2[a] = shorter;
+    }
+    parent[shorter] = a;
+    union(a, other, shorter);
+    union(up, a, taller);
+    height[a] = 1 + Math.max(height[other], height[shorter]);
+    height[up] = 1 + Math.max(height[a], height[taller]);
+  }
+
+  private void replaceChild(int node, int oldChild, int newChild) {
+    if (child1[node] == oldChild) {
+      child1[node] = newChild;
+    } else {
+      child2[node] = newChild;
+    }
+  }
+
+  private void setExactBox(
+      int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+    int b = node * BOX_SIZE;
+    exactBoxes[b] = minX;
+    exactBoxes[b + 1] = minY;
+    exactBoxes[b + 2] = minZ;
+    exactBoxes[b + 3] = maxX;
+    exactBoxes[b + 4] = maxY;
+    exactBoxes[b + 5] = maxZ;
+    boxes[b] = minX - margin;
+    boxes[b + 1] = minY - margin;
+    boxes[b + 2] = minZ - margin;
+    boxes[b + 3] = maxX + margin;
+    boxes[b + 4] = maxY + margin;
+    boxes[b + 5] = maxZ + margin;
+  }
+
+  /** Sets the box of {@code node} to the union of the boxes of {@code first} and {@code second} */
+  private void union(int node, int first, int second) {
+    int n = node * BOX_SIZE;
+    int f = first * BOX_SIZE;
+    int s = second * BOX_SIZE;
+    for (int i = 0; i < 3; i++) {
+      boxes[n + i] = Math.min(boxes[f + i], boxes[s + i]);
+      boxes[n + 3 + i] = Math.max(boxes[f + 3 + i], boxes[s + 3 + i]);
+    }
+  }
+
+  private double surfaceArea(int node) {
+    int b = node * BOX_SIZE;
+    return surfaceArea(
+        boxes[b + 3] - boxes[b], boxes[b + 4] - boxes[b + 1], boxes[b + 5] - boxes[b + 2]);
+  }
+
+  private double combinedSurfaceArea(int first, int second) {
+    int f = first * BOX_SIZE;
+    int s = second * BOX_SIZE;
+    return surfaceArea(
+        Math.max(boxes[f + 3], boxes[s + 3]) - Math.min(boxes[f], boxes[s]),
+        Math.max(boxes[f + 4], boxes[s + 4]) - Math.min(boxes[f + 1], boxes[s + 1]),
+        Math.max(boxes[f + 5], boxes[s + 5]) - Math.min(boxes[f + 2], boxes[s + 2]));
+  }
+
+  private static double surfaceArea(double dx, double dy, double dz) {
+    return 2 * (dx * dy + dy * dz + dz * dx);
+  }
+
+  private static double distanceSquared(double[] boxes, int node, double x, double y, double z) {
+    int b = node * BOX_SIZE;
+    double dx = Math.max(0, Math.max(boxes[b] - x, x - boxes[b + 3]));
+    double dy = Math.max(0, Math.max(boxes[b + 1] - y, y - boxes[b + 4]));
+    double dz = Math.max(0, Math.max(boxes[b + 2] - z, z - boxes[b + 5]));
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  private static boolean intersectsPlanes(double[] boxes, int node, double[] planes) {
+    int b = node * BOX_SIZE;
+    for (int p = 0; p < planes.length; p += 4) {
+      double a = planes[p];
+      double bb = planes[p + 1];
+      double c = planes[p + 2];
+      // the corner furthest along the plane's normal
+      double x = a >= 0 ? boxes[b + 3] : boxes[b];
+      double y = bb >= 0 ? boxes[b + 4] : boxes[b + 1];
+      double z = c >= 0 ? boxes[b + 5] : boxes[b + 2];
+      if (a * x + bb * y + c * z + planes[p + 3] < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the distance along the ray at which it enters the box, 0 if it starts inside, or -1 (or
+   *     NaN for a ray along one of the box's faces) if it misses
+   */
+  private static double entryDistance(
+      double[] boxes,
+      int node,
+      double originX,
+      double originY,
+      double originZ,
+      double inverseX,
+      double inverseY,
+      double inverseZ) {
+    int b = node * BOX_SIZE;
+    double t1 = (boxes[b] - originX) * inverseX;
+    double t2 = (boxes[b + 3] - originX) * inverseX;
+    double near = Math.min(t1, t2);
+    double far = Math.max(t1, t2);
+    t1 = (boxes[b + 1] - originY) * inverseY;
+    t2 = (boxes[b + 4] - originY) * inverseY;
+    near = Math.max(near, Math.min(t1, t2));
+    far = Math.min(far, Math.max(t1, t2));
+    t1 = (boxes[b + 2] - originZ) * inverseZ;
+    t2 = (boxes[b + 5] - originZ) * inverseZ;
+    near = Math.max(near, Math.min(t1, t2));
+    far = Math.min(far, Math.max(t1, t2));
+    if (far < Math.max(near, 0)) {
+      return -1;
+    }
+    return Math.max(near, 0);
+  }
+
+  private int push(int top, int node, double distance) {
+    top = push(top, node);
+    stackDistances[top - 1] = distance;
+    return top;
+  }
+
+  private int push(int top, int node) {
+    if (node == NULL) {
+      return top;
+    }
+    if (top == stack.length) {
+      stack = Arrays.copyOf(stack, 2 * stack.length);
+      stackDistances = Arrays.copyOf(stackDistances, stack.length);
+    }
+    stack[top] = node;
+    return top + 1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T item(int node) {
+    return (T) items[node];
+  }
+
+  private void checkItem(int id) {
+    if (id < 0 || id >= nodeCount || height[id] != 0) {
+      throw new IllegalArgumentException("No item with id " + id);
+    }
+  }
+
+  private int allocateNode() {
+    if (freeList == NULL) {
+      if (nodeCount == parent.length) {
+        int capacity = 2 * parent.length;
+        boxes = Arrays.copyOf(boxes, capacity * BOX_SIZE);
+        exactBoxes = Arrays.copyOf(exactBoxes, capacity * BOX_SIZE);
+        parent = Arrays.copyOf(parent, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        height = Arrays.copyOf(height, capacity);
+        items = Arrays.copyOf(items, capacity);
+      }
+      return nodeCount++;
+    }
+    int node = freeList;
+    freeList = parent[node];
+    return node;
+  }
+
+  private void freeNode(int node) {
+    parent[node] = freeList;
+    height[node] = -1;
+    items[node] = null;
+    freeList = node;
+  }
+}
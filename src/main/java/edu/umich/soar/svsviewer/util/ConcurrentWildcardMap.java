@@ -0,0 +1,162 @@
+package edu.umich.soar.svsviewer.util;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A thread-safe {@link WildcardMap}. Writes are serialized and publish a new {@link
+ * WildcardMap#snapshot() snapshot} of the map when done; reads go to the current snapshot without
+ * locking, so they never wait for a writer and always see the map as of the end of some write.
+ *
+ * <p>Taking a snapshot is cheap, but the first write after it copies the nodes on the path to the
+ * changed key. Views and search results are read-only and don't reflect later writes.
+ */
+public class ConcurrentWildcardMap<T> implements Map<String, T> {
+  private final WildcardMap<T> map = new WildcardMap<>();
+  private volatile WildcardMap<T> snapshot = map.snapshot();
+
+  /**
+   * @return the map as of the last completed write; it never changes
+   */
+  public WildcardMap<T> snapshot() {
+    return snapshot;
+  }
+
+  private void publish() {
+    snapshot = map.snapshot();
+  }
+
+  @Override
+  public int size() {
+    return snapshot.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return snapshot.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return snapshot.containsKey(key);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    return snapshot.containsValue(value);
+  }
+
+  @Override
+  public T get(Object key) {
+    return snapshot.get(key);
+  }
+
+  /**
+   * @see WildcardMap#getWithWildcards(String)
+   */
+  public List<WildcardMap.Entry<T>> getWithWildcards(String keyWithWildcards) {
+    return snapshot.getWithWildcards(keyWithWildcards);
+  }
+
+  /**
+   * @see WildcardMap#getValuesWithWildcards(String)
+   */
+  public List<T> getValuesWithWildcards(String keyWithWildcards) {
+    return snapshot.getValuesWithWildcards(keyWithWildcards);
+  }
+
+  /**
+   * @see WildcardMap#forEachValue(Consumer)
+   */
+  public void forEachValue(Consumer<? super T> action) {
+    snapshot.forEachValue(action);
+  }
+
+  @Override
+  public synchronized T put(String key, T value) {
+    T previousValue = map.put(key, value);
+    publish();
+    return previousValue;
+  }
+
+  @Override
+  public T computeIfAbsent(String key, Function<? super String, ? extends T> mappingFunction) {
+    T value = snapshot.get(key);
+    if (value != null) {
+      return value;
+    }
+    synchronized (this) {
+      value = map.get(key);
+      if (value == null) {
+        value = mappingFunction.apply(key);
+        if (value != null) {
+          map.put(key, value);
+          publish();
+        }
+      }
+      return value;
+    }
+  }
+
+  @Override
+  public synchronized T remove(Object key) {
+    T previousValue = map.remove(key);
+    if (previousValue != null) {
+      publish();
+    }
+    return previousValue;
+  }
+
+  /**
+   * @see WildcardMap#removeWithWildcards(String)
+   */
+  public synchronized Collection<T> removeWithWildcards(String keyWithWildcards) {
+    Collection<T> removed = map.removeWithWildcards(keyWithWildcards);
+    if (!removed.isEmpty()) {
+      publish();
+    }
+    return removed;
+  }
+
+  /**
+   * @see WildcardMap#removePrefix(String)
+   */
+  public synchronized Collection<T> removePrefix(String prefix) {
+    Collection<T> removed = map.removePrefix(prefix);
+    if (!removed.isEmpty()) {
+      publish();
+    }
+    return removed;
+  }
+
+  @Override
+  public synchronized void putAll(Map<? extends String, ? extends T> m) {
+    map.putAll(m);
+    publish();
+  }
+
+  @Override
+  public synchronized void clear() {
+    map.clear();
+    publish();
+  }
+
+  /** A read-only view of the keys as of the last completed write */
+  @Override
+  public Set<String> keySet() {
+    return Collections.unmodifiableSet(snapshot.keySet());
+  }
+
+  /** A read-only view of the values as of the last completed write */
+  @Override
+  public Collection<T> values() {
+    return Collections.unmodifiableCollection(snapshot.values());
+  }
+
+  /** A read-only view of the entries as of the last completed write */
+  @Override
+  public Set<Map.Entry<String, T>> entrySet() {
+    return Collections.unmodifiableSet(snapshot.entrySet());
+  }
+}
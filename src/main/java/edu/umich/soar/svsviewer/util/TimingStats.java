@@ -0,0 +1,72 @@
+package edu.umich.soar.svsviewer.util;
+
+/**
+ * Accumulates how often a repeated operation ran, how many items it processed and how long it took.
+ * Not thread-safe; record from the thread that runs the operation.
+ */
+public class TimingStats {
+  private final String name;
+  private long runs = 0;
+  private long items = 0;
+  private long totalNanos = 0;
+  private long maxNanos = 0;
+  private int lastItems = 0;
+  private long lastNanos = 0;
+
+  public TimingStats(String name) {
+    this.name = name;
+  }
+
+  public void record(int itemCount, long elapsedNanos) {
+    runs++;
+    items += itemCount;
+    totalNanos += elapsedNanos;
+    maxNanos = Math.max(maxNanos, elapsedNanos);
+    lastItems = itemCount;
+    lastNanos = elapsedNanos;
+  }
+
+  public void reset() {
+    runs = 0;
+    items = 0;
+    totalNanos = 0;
+    maxNanos = 0;
+    lastItems = 0;
+    lastNanos = 0;
+  }
+
+  public long getRuns() {
+    return runs;
+  }
+
+  public long getItems() {
+    return items;
+  }
+
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  public int getLastItems() {
+    return lastItems;
+  }
+
+  public long getLastNanos() {
+    return lastNanos;
+  }
+
+  public double getAverageMillis() {
+    return runs == 0 ? 0 : totalNanos / 1_000_000d / runs;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d runs, %d items, avg %.3f ms, max %.3f ms",
+        name, runs, items, getAverageMillis(), maxNanos / 1_000_000d);
+  }
+}
@@ -1,87 +1,518 @@
 package edu.umich.soar.svsviewer.util;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Map with string keys that also supports wildcard searching; {@code *} matches 0 or more
- * characters. Actual keys are not allowed to contain {@code *}. Underlying implementation is a trie
+ * characters. Actual keys are not allowed to contain {@code *}. Underlying implementation is a
+ * path-compressed (Patricia) trie.
+ *
+ * <p>Results of wildcard searches are cached per pattern until the map is next modified, since
+ * clients tend to send the same few patterns with every update.
+ *
+ * <p>Not thread-safe, but {@link #snapshot()} makes immutable copies in constant time, which can be
+ * read from any thread; {@link ConcurrentWildcardMap} is built on them.
  *
  * @param <T>
  */
 public class WildcardMap<T> implements Map<String, T> {
-  private Node<T> root = new Node<>();
+  private static final char[] NO_CHILD_CHARS = new char[0];
+  private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+  private static final int LINEAR_SEARCH_LIMIT = 16;
+  private static final int SEARCH_CACHE_SIZE = 32;
+  private static final int ITERATOR_INITIAL_DEPTH = 8;
+
+  private final boolean readOnly;
+  // nodes created with this token belong to this map and may be changed in place; all others may be
+  // shared with snapshots and are copied first. Replaced by snapshot(); null for snapshots.
+  private Object edit;
+  private Node<T> root;
   private int size = 0;
+  // incremented whenever a key is added or removed or a value replaced
+  private int modCount = 0;
+  // the SEARCH_CACHE_SIZE most recently searched patterns; created on the first wildcard search, or
+  // right away (and synchronized) for snapshots, which may be searched from several threads at once
+  private Map<String, CachedSearch<T>> searchCache;
+
+  public WildcardMap() {
+    this.readOnly = false;
+    this.edit = new Object();
+    this.root = new Node<>("", 0, 0, edit);
+  }
+
+  private WildcardMap(Node<T> root, int size) {
+    this.readOnly = true;
+    this.root = root;
+    this.size = size;
+    this.searchCache = Collections.synchronizedMap(new SearchCache<>());
+  }
 
+  /**
+   * The edge from the parent is labeled with a range of one of the keys that were put into the map,
+   * so labels don't need their own char arrays and splitting an edge copies nothing. Most nodes
+   * have only a few children, so they are kept in sorted parallel arrays rather than a map. Except
+   * for the root, a node without a value always has at least two children.
+   */
   private static class Node<T> {
-    Map<Character, Node<T>> children = new HashMap<>();
+    String labelSource;
+    int labelStart;
+    int labelEnd;
+    // childChars[i] is the first character of the label of children[i]
+    char[] childChars = NO_CHILD_CHARS;
+
+    @SuppressWarnings("unchecked")
+    Node<T>[] children = (Node<T>[]) NO_CHILDREN;
+
     T value;
+    final Object edit;
+
+    Node(String labelSource, int labelStart, int labelEnd, Object edit) {
+      this.labelSource = labelSource;
+      this.labelStart = labelStart;
+      this.labelEnd = labelEnd;
+      this.edit = edit;
+    }
+
+    /**
+     * @return this node if it belongs to {@code edit}, otherwise a copy that does
+     */
+    Node<T> editable(Object edit) {
+      if (this.edit == edit) {
+        return this;
+      }
+      Node<T> copy = new Node<>(labelSource, labelStart, labelEnd, edit);
+      copy.childChars = childChars.length == 0 ? childChars : childChars.clone();
+      copy.children = children.length == 0 ? children : children.clone();
+      copy.value = value;
+      return copy;
+    }
+
+    /**
+     * Makes {@code children[index]} editable; this node has to be editable already.
+     *
+     * @return the editable child
+     */
+    Node<T> editableChild(int index, Object edit) {
+      Node<T> child = children[index].editable(edit);
+      children[index] = child;
+      return child;
+    }
+
+    int labelLength() {
+      return labelEnd - labelStart;
+    }
+
+    char labelCharAt(int index) {
+      return labelSource.charAt(labelStart + index);
+    }
+
+    /**
+     * @return the number of characters that the label shares with {@code key} from {@code offset}
+     */
+    int commonPrefixLength(String key, int offset) {
+      int length = Math.min(labelLength(), key.length() - offset);
+      for (int i = 0; i < length; i++) {
+        if (labelSource.charAt(labelStart + i) != key.charAt(offset + i)) {
+          return i;
+        }
+      }
+      return length;
+    }
+
+    /**
+     * @return whether {@code key} continues with this node's label at {@code offset}, assuming that
+     *     the parent already matched the first character
+     */
+    boolean restOfLabelMatches(String key, int offset) {
+      int length = labelLength();
+      // most edges below shared prefixes are a single character; don't touch the label for those
+      return length == 1 || key.regionMatches(offset + 1, labelSource, labelStart + 1, length - 1);
+    }
+
+    /**
+     * @return the index of the child whose label starts with {@code c}, or {@code -(insertion
+     *     point) - 1} if there is none
+     */
+    int childIndex(char c) {
+      char[] chars = childChars;
+      if (chars.length > LINEAR_SEARCH_LIMIT) {
+        return Arrays.binarySearch(chars, c);
+      }
+      // faster than a binary search for the few children that most nodes have
+      for (int i = 0; i < chars.length; i++) {
+        if (chars[i] >= c) {
+          return chars[i] == c ? i : -i - 1;
+        }
+      }
+      return -chars.length - 1;
+    }
+
+    Node<T> child(char c) {
+      int index = childIndex(c);
+      return index < 0 ? null : children[index];
+    }
+
+    void insertChild(int index, Node<T> child) {
+      int count = children.length;
+      char[] newChars = new char[count + 1];
+      Node<T>[] newChildren = Arrays.copyOf(children, count + 1);
+      System.arraycopy(childChars, 0, newChars, 0, index);
+      System.arraycopy(childChars, index, newChars, index + 1, count - index);
+      System.arraycopy(children, index, newChildren, index + 1, count - index);
+      newChars[index] = child.labelCharAt(0);
+      newChildren[index] = child;
+      childChars = newChars;
+      children = newChildren;
+    }
+
+    @SuppressWarnings("unchecked")
+    void removeAllChildren() {
+      childChars = NO_CHILD_CHARS;
+      children = (Node<T>[]) NO_CHILDREN;
+    }
+
+    @SuppressWarnings("unchecked")
+    void removeChild(int index) {
+      int count = children.length - 1;
+      if (count == 0) {
+        removeAllChildren();
+        return;
+      }
+      char[] newChars = new char[count];
+      Node<T>[] newChildren = (Node<T>[]) new Node<?>[count];
+      System.arraycopy(childChars, 0, newChars, 0, index);
+      System.arraycopy(childChars, index + 1, newChars, index, count - index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      System.arraycopy(children, index + 1, newChildren, index, count - index);
+      childChars = newChars;
+      children = newChildren;
+    }
   }
 
   public record Entry<T>(String key, T value) {}
 
+  /** A compiled pattern and its results as of {@link #modCount} */
+  private record CachedSearch<T>(
+      WildcardPattern pattern, int modCount, List<Entry<T>> entries, List<T> values) {}
+
+  /** Drops the least recently searched pattern when full */
+  private static class SearchCache<T> extends LinkedHashMap<String, CachedSearch<T>> {
+    SearchCache() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedSearch<T>> eldest) {
+      return size() > SEARCH_CACHE_SIZE;
+    }
+  }
+
+  /**
+   * Returns a read-only copy of this map in constant time. The two share all nodes; from then on,
+   * this map copies nodes before changing them, so that the snapshot never changes. Snapshots may
+   * be read from any number of threads, provided they were published safely.
+   */
+  public WildcardMap<T> snapshot() {
+    if (readOnly) {
+      return this;
+    }
+    edit = new Object();
+    return new WildcardMap<>(root, size);
+  }
+
+  /**
+   * For tests: whether every node but the root has a value or at least two children, as removals
+   * have to leave the trie.
+   */
+  boolean isCompact() {
+    for (Node<T> child : root.children) {
+      if (!isCompact(child)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static <T> boolean isCompact(Node<T> node) {
+    if (node.value == null && node.children.length < 2) {
+      return false;
+    }
+    for (Node<T> child : node.children) {
+      if (!isCompact(child)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void checkWritable() {
+    if (readOnly) {
+      throw new UnsupportedOperationException("snapshots are read-only");
+    }
+  }
+
   @Override
   public T put(String key, T value) {
+    if (value == null) {
+      // a node without a value is just a prefix of other keys
+      return remove(key);
+    }
+    checkWritable();
+    root = root.editable(edit);
     Node<T> currentNode = root;
-    for (char c : key.toCharArray()) {
-      currentNode.children.putIfAbsent(c, new Node<>());
-      currentNode = currentNode.children.get(c);
+    int i = 0;
+    while (i < key.length()) {
+      int index = currentNode.childIndex(key.charAt(i));
+      if (index < 0) {
+        // nothing else starts this way; the rest of the key becomes a single edge
+        Node<T> leaf = new Node<>(key, i, key.length(), edit);
+        currentNode.insertChild(-index - 1, leaf);
+        currentNode = leaf;
+        break;
+      }
+      Node<T> child = currentNode.editableChild(index, edit);
+      int common = child.commonPrefixLength(key, i);
+      if (common < child.labelLength()) {
+        // the key ends or diverges inside the edge
+        child = split(currentNode, index, common);
+      }
+      currentNode = child;
+      i += common;
     }
     T previousValue = currentNode.value;
     currentNode.value = value;
-    size++;
+    if (previousValue == null) {
+      size++;
+    }
+    if (previousValue != value) {
+      modCount++;
+    }
     return previousValue;
   }
 
+  /**
+   * Splits the edge to {@code parent.children[index]} after {@code length} characters.
+   *
+   * @return the new node at the split point
+   */
+  private Node<T> split(Node<T> parent, int index, int length) {
+    Node<T> child = parent.children[index];
+    Node<T> middle =
+        new Node<>(child.labelSource, child.labelStart, child.labelStart + length, edit);
+    child.labelStart += length;
+    middle.insertChild(0, child);
+    // the first character of the edge is unchanged
+    parent.children[index] = middle;
+    return middle;
+  }
+
+  /** Exact lookup; {@code *} is treated literally. Walks the trie without allocating. */
   @Override
   public T get(Object key) {
     if (!(key instanceof String keyString)) {
       throw new IllegalArgumentException("only String keys are allowed");
     }
-    List<Entry<T>> result = new ArrayList<>();
-    search(false, root, "", 0, keyString, result);
-    if (result.isEmpty()) {
-      return null;
+    Node<T> node = findNode(keyString);
+    return node == null ? null : node.value;
+  }
+
+  /**
+   * @return the node for exactly {@code key}, or null if {@code key} ends inside an edge or isn't
+   *     in the trie at all
+   */
+  private Node<T> findNode(String key) {
+    Node<T> currentNode = root;
+    int i = 0;
+    while (i < key.length()) {
+      Node<T> child = currentNode.child(key.charAt(i));
+      if (child == null || !child.restOfLabelMatches(key, i)) {
+        return null;
+      }
+      currentNode = child;
+      i += child.labelLength();
     }
-    return result.get(0).value();
+    return currentNode;
   }
 
   /**
-   * Return all contained key/value pairs where the keys match {@code keyWithWildcards}.
+   * Return all contained key/value pairs where the keys match {@code keyWithWildcards}. Each
+   * matching key is returned once, and the cost is bounded by the size of the trie times the length
+   * of the pattern, however many {@code *} it has. If the map wasn't modified since the last search
+   * with the same pattern, the cached result is returned without searching.
    *
    * @param keyWithWildcards matches keys of the desired values; {@code *} matches 0 or more
    *     characters
+   * @return an unmodifiable list
    */
   public List<Entry<T>> getWithWildcards(String keyWithWildcards) {
-    List<Entry<T>> result = new ArrayList<>();
-    search(true, root, "", 0, keyWithWildcards, result);
-    return result;
-  }
-
-  private void search(
-      boolean useWildcards,
-      Node<T> parent,
-      String currentPath,
-      int index,
-      String key,
-      List<Entry<T>> results) {
-    if (parent == null) return;
-    if (index == key.length()) {
-      results.add(new Entry<>(currentPath, parent.value));
-      return;
+    return cachedSearch(keyWithWildcards).entries;
+  }
+
+  /**
+   * Like {@link #getWithWildcards(String)}, but only the values.
+   *
+   * @return an unmodifiable list
+   */
+  public List<T> getValuesWithWildcards(String keyWithWildcards) {
+    return cachedSearch(keyWithWildcards).values;
+  }
+
+  private CachedSearch<T> cachedSearch(String keyWithWildcards) {
+    Map<String, CachedSearch<T>> cache = searchCache;
+    if (cache == null) {
+      cache = searchCache = new SearchCache<>();
+    }
+    CachedSearch<T> cached = cache.get(keyWithWildcards);
+    if (cached != null && cached.modCount == modCount) {
+      return cached;
     }
-    char c = key.charAt(index);
-    if (useWildcards && c == '*') {
-      // consume zero characters
-      search(true, parent, currentPath, index + 1, key, results);
-      for (Map.Entry<Character, Node<T>> entry : parent.children.entrySet()) {
-        // consume one character
-        search(true, entry.getValue(), currentPath + entry.getKey(), index, key, results);
+    WildcardPattern pattern =
+        cached != null ? cached.pattern : WildcardPattern.compile(keyWithWildcards);
+    List<Entry<T>> entries = Collections.unmodifiableList(search(pattern));
+    cached =
+        new CachedSearch<>(pattern, modCount, entries, entries.stream().map(Entry::value).toList());
+    cache.put(keyWithWildcards, cached);
+    return cached;
+  }
+
+  /** Searches without consulting or filling the cache */
+  List<Entry<T>> getWithWildcardsUncached(String keyWithWildcards) {
+    return search(WildcardPattern.compile(keyWithWildcards));
+  }
+
+  private List<Entry<T>> search(WildcardPattern pattern) {
+    Search<T> search = new Search<>(pattern, null);
+    search.visit(root, 0);
+    return search.results;
+  }
+
+  /**
+   * Runs a pattern's NFA down the trie. Since the trie is a tree, every node is visited at most
+   * once and every matching key is found once; subtrees in which no pattern state is active any
+   * more are skipped.
+   */
+  private static class Search<T> {
+    // node depth for which state sets are allocated up front
+    private static final int INITIAL_DEPTH = 16;
+
+    final WildcardPattern pattern;
+    // the edit token for visitRemoving
+    final Object edit;
+    final int words;
+    // the state set of the node at depth d is at states[d * words...]
+    long[] states;
+    // the key up to the node being visited
+    final StringBuilder currentPath = new StringBuilder();
+    final List<Entry<T>> results = new ArrayList<>();
+    // values of the keys removed by visitRemoving
+    final List<T> removed = new ArrayList<>();
+
+    Search(WildcardPattern pattern, Object edit) {
+      this.pattern = pattern;
+      this.edit = edit;
+      this.words = pattern.words();
+      this.states = new long[words * INITIAL_DEPTH];
+      pattern.start(states, 0);
+    }
+
+    /**
+     * @param depth the number of nodes above {@code node}; its state set has to hold the states for
+     *     the key up to its edge
+     */
+    void visit(Node<T> node, int depth) {
+      int offset = depth * words;
+      if (!stepOverLabel(node, offset)) {
+        return;
+      }
+      int pathLength = currentPath.length();
+      currentPath.append(node.labelSource, node.labelStart, node.labelEnd);
+      // nodes without a value are only prefixes of other keys
+      if (node.value != null && pattern.accepts(states, offset)) {
+        results.add(new Entry<>(currentPath.toString(), node.value));
       }
-    } else {
-      // attempt to consume current character (no results if child for that character does not
-      // exist)
-      search(useWildcards, parent.children.get(c), currentPath + c, index + 1, key, results);
+      if (node.children.length > 0) {
+        int childOffset = reserveChildStates(offset);
+        for (Node<T> child : node.children) {
+          System.arraycopy(states, offset, states, childOffset, words);
+          visit(child, depth + 1);
+        }
+      }
+      currentPath.setLength(pathLength);
+    }
+
+    /**
+     * Like {@link #visit}, but removes the matching keys and collects their values in {@link
+     * #removed}, without building keys. Subtrees in which every key matches are detached without
+     * visiting them. Only nodes above removed keys are changed, after making them editable.
+     *
+     * @return {@code node} if nothing was removed below it, otherwise its editable replacement (the
+     *     node itself, if it already was). Whether anything was removed shows in {@link #removed}.
+     *     Its children are pruned, but it may itself be left without a value and with less than two
+     *     children.
+     */
+    Node<T> visitRemoving(Node<T> node, int depth) {
+      int offset = depth * words;
+      if (!stepOverLabel(node, offset)) {
+        return node;
+      }
+      if (pattern.acceptsAnySuffix(states, offset)) {
+        collectValues(node, removed);
+        Node<T> detached = node.editable(edit);
+        detached.value = null;
+        detached.removeAllChildren();
+        return detached;
+      }
+      Node<T> result = node;
+      if (node.value != null && pattern.accepts(states, offset)) {
+        removed.add(node.value);
+        result = node.editable(edit);
+        result.value = null;
+      }
+      Node<T>[] children = node.children;
+      if (children.length > 0) {
+        int childOffset = reserveChildStates(offset);
+        boolean childrenChanged = false;
+        for (int i = 0; i < children.length; i++) {
+          System.arraycopy(states, offset, states, childOffset, words);
+          int removedBefore = removed.size();
+          Node<T> child = visitRemoving(children[i], depth + 1);
+          // a child that was already editable is changed in place, so its identity says nothing
+          if (removed.size() > removedBefore) {
+            // result.children may be the same array, but only visited entries are replaced
+            result = result.editable(edit);
+            result.children[i] = child;
+            childrenChanged = true;
+          }
+        }
+        if (childrenChanged) {
+          pruneChildren(result, edit);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * @return whether any pattern state is still active after the edge of {@code node}
+     */
+    private boolean stepOverLabel(Node<T> node, int offset) {
+      for (int i = 0; i < node.labelLength(); i++) {
+        if (!pattern.step(states, offset, node.labelCharAt(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @return the offset of the state set for the children of the node at {@code offset}
+     */
+    private int reserveChildStates(int offset) {
+      int childOffset = offset + words;
+      if (childOffset + words > states.length) {
+        states = Arrays.copyOf(states, 2 * states.length);
+      }
+      return childOffset;
     }
   }
 
@@ -110,54 +541,185 @@ public class WildcardMap<T> implements Map<String, T> {
     if (!(key instanceof String keyString)) {
       throw new IllegalArgumentException("only String keys are allowed");
     }
-    // keep track of the parent nodes that lead to the node with the key;
-    // if they become empty after removing the node, they have to be removed
-    LinkedList<Node<T>> path = new LinkedList<>();
+    checkWritable();
+    // find the path first, so that nothing is copied if the key doesn't exist
+    int[] path = new int[keyString.length()];
+    int depth = 0;
     Node<T> currentNode = root;
-    path.add(root); // Add root to path
-    for (char c : keyString.toCharArray()) {
-      currentNode = currentNode.children.get(c);
-      if (currentNode == null) {
+    int i = 0;
+    while (i < keyString.length()) {
+      int index = currentNode.childIndex(keyString.charAt(i));
+      if (index < 0 || !currentNode.children[index].restOfLabelMatches(keyString, i)) {
         return null; // Key does not exist
       }
-      path.add(currentNode);
+      path[depth++] = index;
+      currentNode = currentNode.children[index];
+      i += currentNode.labelLength();
     }
     T previousValue = currentNode.value;
-    if (previousValue != null) {
-      currentNode.value = null;
-      cleanUpPath(keyString, path);
-      size--;
+    if (previousValue == null) {
+      return null;
+    }
+    // removing a node can leave its parent with a single child, which then has to be merged into
+    // the grandparent's edge
+    Node<T> grandparent = null;
+    Node<T> parent = null;
+    root = root.editable(edit);
+    currentNode = root;
+    for (int d = 0; d < depth; d++) {
+      grandparent = parent;
+      parent = currentNode;
+      currentNode = currentNode.editableChild(path[d], edit);
+    }
+    currentNode.value = null;
+    if (parent != null) {
+      compact(parent, currentNode);
+      if (grandparent != null) {
+        compact(grandparent, parent);
+      }
     }
+    size--;
+    modCount++;
     return previousValue;
   }
 
   /**
-   * Remove nodes from the path that are not needed anymore (i.e. have no value and no children).
+   * Restore the invariant for a non-root {@code node} that may have lost its value or a child:
+   * remove it if it has no value and no children, or merge it with its only child. Both nodes have
+   * to be editable.
    */
-  private void cleanUpPath(String key, LinkedList<Node<T>> path) {
-    int index = key.length();
-    while (index >= 0 && !path.isEmpty()) {
-      Node<T> node = path.removeLast();
-      if (node.value == null && node.children.isEmpty()) {
-        if (index > 0) { // Not root
-          Node<T> parent = path.peekLast();
-          if (parent != null) {
-            parent.children.remove(key.charAt(index - 1));
-          }
+  private void compact(Node<T> parent, Node<T> node) {
+    if (node.value != null || node.children.length > 1) {
+      return;
+    }
+    int index = parent.childIndex(node.labelCharAt(0));
+    if (node.children.length == 0) {
+      parent.removeChild(index);
+      return;
+    }
+    parent.children[index] = mergeWithOnlyChild(node, edit);
+  }
+
+  /**
+   * @return the only child of {@code node}, made editable, with {@code node}'s label prepended to
+   *     its own. {@code node} itself is left unchanged, since it may be shared with a snapshot; it
+   *     is to be replaced by the result.
+   */
+  private static <T> Node<T> mergeWithOnlyChild(Node<T> node, Object edit) {
+    Node<T> child = node.children[0].editable(edit);
+    String label =
+        new StringBuilder(node.labelLength() + child.labelLength())
+            .append(node.labelSource, node.labelStart, node.labelEnd)
+            .append(child.labelSource, child.labelStart, child.labelEnd)
+            .toString();
+    child.labelSource = label;
+    child.labelStart = 0;
+    child.labelEnd = label.length();
+    return child;
+  }
+
+  /**
+   * Does {@link #compact} for all children of {@code node} at once, after any number of keys were
+   * removed below it. {@code node} has to be editable; its children don't.
+   */
+  private static <T> void pruneChildren(Node<T> node, Object edit) {
+    Node<T>[] children = node.children;
+    int kept = 0;
+    for (int i = 0; i < children.length; i++) {
+      Node<T> child = children[i];
+      if (child.value == null && child.children.length < 2) {
+        if (child.children.length == 0) {
+          continue;
         }
-      } else {
-        break; // Stop if node has value or children
+        child = mergeWithOnlyChild(child, edit);
       }
-      index--;
+      node.childChars[kept] = node.childChars[i];
+      children[kept] = child;
+      kept++;
+    }
+    if (kept == 0) {
+      node.removeAllChildren();
+    } else if (kept < children.length) {
+      node.childChars = Arrays.copyOf(node.childChars, kept);
+      node.children = Arrays.copyOf(children, kept);
+    }
+  }
+
+  private static <T> void collectValues(Node<T> node, List<T> values) {
+    if (node.value != null) {
+      values.add(node.value);
+    }
+    for (Node<T> child : node.children) {
+      collectValues(child, values);
     }
   }
 
+  /**
+   * Removes all keys matching {@code keyWithWildcards} in a single pass over the trie. Subtrees in
+   * which every key matches, like everything below {@code robot} for {@code robot*}, are detached
+   * as a whole.
+   *
+   * @return the removed values
+   */
   public Collection<T> removeWithWildcards(String keyWithWildcards) {
-    List<Entry<T>> pairsToRemove = getWithWildcards(keyWithWildcards);
-    for (Entry<T> entry : pairsToRemove) {
-      remove(entry.key());
+    checkWritable();
+    Search<T> search = new Search<>(WildcardPattern.compile(keyWithWildcards), edit);
+    root = search.visitRemoving(root, 0);
+    return removed(search.removed);
+  }
+
+  /**
+   * Removes all keys starting with {@code prefix} by detaching the subtree below it.
+   *
+   * @return the removed values
+   */
+  public Collection<T> removePrefix(String prefix) {
+    checkWritable();
+    // find the path first, so that nothing is copied if no key has the prefix
+    int[] path = new int[prefix.length()];
+    int depth = 0;
+    Node<T> currentNode = root;
+    int i = 0;
+    while (i < prefix.length()) {
+      int index = currentNode.childIndex(prefix.charAt(i));
+      if (index < 0) {
+        return List.of();
+      }
+      Node<T> child = currentNode.children[index];
+      int common = child.commonPrefixLength(prefix, i);
+      if (common < child.labelLength() && i + common < prefix.length()) {
+        // the prefix diverges inside the edge
+        return List.of();
+      }
+      path[depth++] = index;
+      currentNode = child;
+      i += common;
+    }
+    List<T> values = new ArrayList<>();
+    collectValues(currentNode, values);
+    if (depth == 0) {
+      clear();
+      return values;
     }
-    return pairsToRemove.stream().map(Entry::value).toList();
+    Node<T> grandparent = null;
+    Node<T> parent = root = root.editable(edit);
+    for (int d = 0; d < depth - 1; d++) {
+      grandparent = parent;
+      parent = parent.editableChild(path[d], edit);
+    }
+    parent.removeChild(path[depth - 1]);
+    if (grandparent != null) {
+      compact(grandparent, parent);
+    }
+    return removed(values);
+  }
+
+  private List<T> removed(List<T> values) {
+    if (!values.isEmpty()) {
+      size -= values.size();
+      modCount++;
+    }
+    return values;
   }
 
   @Override
@@ -167,38 +729,226 @@ public class WildcardMap<T> implements Map<String, T> {
 
   @Override
   public void clear() {
-    root = new Node<>();
+    checkWritable();
+    root = new Node<>("", 0, 0, edit);
+    size = 0;
+    modCount++;
+  }
+
+  /**
+   * Calls {@code action} with every value, without allocating. The map must not be modified by
+   * {@code action}.
+   */
+  public void forEachValue(Consumer<? super T> action) {
+    forEachValue(root, action);
+  }
+
+  private void forEachValue(Node<T> node, Consumer<? super T> action) {
+    if (node.value != null) {
+      action.accept(node.value);
+    }
+    for (Node<T> child : node.children) {
+      forEachValue(child, action);
+    }
   }
 
+  /**
+   * @return a live view, which creates each key String only when it is iterated over
+   */
   @Override
   public Set<String> keySet() {
-    return entrySet().stream().map(Map.Entry::getKey).collect(Collectors.toSet());
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<String> iterator() {
+        return new TrieIterator<>(true) {
+          @Override
+          String element(Node<T> node, StringBuilder key) {
+            return key.toString();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof String && containsKey(o);
+      }
+
+      @Override
+      public boolean remove(Object o) {
+        return o instanceof String && WildcardMap.this.remove(o) != null;
+      }
+
+      @Override
+      public void clear() {
+        WildcardMap.this.clear();
+      }
+    };
   }
 
+  /**
+   * @return a live view, which iterates over the trie without building keys
+   */
   @Override
   public Collection<T> values() {
-    return entrySet().stream().map(Map.Entry::getValue).toList();
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<T> iterator() {
+        return new TrieIterator<>(false) {
+          @Override
+          T element(Node<T> node, StringBuilder key) {
+            return node.value;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public void forEach(Consumer<? super T> action) {
+        forEachValue(action);
+      }
+
+      @Override
+      public void clear() {
+        WildcardMap.this.clear();
+      }
+    };
   }
 
+  /**
+   * @return a live view; the entries are snapshots, which don't support {@link
+   *     Map.Entry#setValue(Object)}
+   */
   @Override
   public Set<Map.Entry<String, T>> entrySet() {
-    Set<Map.Entry<String, T>> entries = new HashSet<>();
-    collectEntries(root, "", entries);
-    return entries;
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Map.Entry<String, T>> iterator() {
+        return new TrieIterator<>(true) {
+          @Override
+          Map.Entry<String, T> element(Node<T> node, StringBuilder key) {
+            return new AbstractMap.SimpleImmutableEntry<>(key.toString(), node.value);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        if (!(o instanceof Map.Entry<?, ?> entry) || !(entry.getKey() instanceof String key)) {
+          return false;
+        }
+        T value = get(key);
+        return value != null && value.equals(entry.getValue());
+      }
+
+      @Override
+      public void clear() {
+        WildcardMap.this.clear();
+      }
+    };
   }
 
-  private void collectEntries(Node<T> node, String currentKey, Set<Map.Entry<String, T>> entries) {
-    if (node == null) {
-      return;
+  /**
+   * Pre-order traversal of the nodes with values, with an explicit stack instead of recursion.
+   * Fails fast if the map is modified during iteration; removal through the iterator isn't
+   * supported, since removing a key restructures the nodes on the stack.
+   */
+  private abstract class TrieIterator<E> implements Iterator<E> {
+    private final int expectedModCount = modCount;
+    // the key is only maintained if the elements need it
+    private final StringBuilder key;
+
+    // at each depth, the children being visited, the index of the next one, and the length of the
+    // key up to their parent
+    @SuppressWarnings("unchecked")
+    private Node<T>[][] childrenStack = (Node<T>[][]) new Node<?>[ITERATOR_INITIAL_DEPTH][];
+
+    private int[] indexStack = new int[ITERATOR_INITIAL_DEPTH];
+    private int[] keyLengthStack = new int[ITERATOR_INITIAL_DEPTH];
+    private int depth = -1;
+    private Node<T> next;
+
+    TrieIterator(boolean buildKeys) {
+      key = buildKeys ? new StringBuilder() : null;
+      push(root.children, 0);
+      if (root.value != null) {
+        next = root;
+      } else {
+        advance();
+      }
     }
-    if (node.value != null) {
-      entries.add(new AbstractMap.SimpleEntry<>(currentKey, node.value));
+
+    abstract E element(Node<T> node, StringBuilder key);
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public E next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      E element = element(next, key);
+      advance();
+      return element;
+    }
+
+    private void push(Node<T>[] children, int keyLength) {
+      depth++;
+      if (depth == childrenStack.length) {
+        childrenStack = Arrays.copyOf(childrenStack, 2 * depth);
+        indexStack = Arrays.copyOf(indexStack, 2 * depth);
+        keyLengthStack = Arrays.copyOf(keyLengthStack, 2 * depth);
+      }
+      childrenStack[depth] = children;
+      indexStack[depth] = 0;
+      keyLengthStack[depth] = keyLength;
     }
-    for (Map.Entry<Character, Node<T>> child :
-        node.children.entrySet()) { // Assuming 'children' is a map of child nodes
-      char nextChar = child.getKey();
-      Node<T> nextNode = child.getValue();
-      collectEntries(nextNode, currentKey + nextChar, entries);
+
+    /** Moves {@link #next} to the next node with a value, or null at the end */
+    private void advance() {
+      while (depth >= 0) {
+        Node<T>[] children = childrenStack[depth];
+        int index = indexStack[depth];
+        if (index == children.length) {
+          depth--;
+          continue;
+        }
+        indexStack[depth] = index + 1;
+        Node<T> child = children[index];
+        int keyLength = 0;
+        if (key != null) {
+          key.setLength(keyLengthStack[depth]);
+          key.append(child.labelSource, child.labelStart, child.labelEnd);
+          keyLength = key.length();
+        }
+        if (child.children.length > 0) {
+          push(child.children, keyLength);
+        }
+        if (child.value != null) {
+          next = child;
+          return;
+        }
+      }
+      next = null;
     }
   }
 }
@@ -0,0 +1,152 @@
+package edu.umich.soar.svsviewer.util;
+
+import java.util.Arrays;
+
+/**
+ * A {@link WildcardMap} pattern compiled to an NFA with one state per pattern position, simulated
+ * with bit sets (the shift-and algorithm). State {@code j} means that the first {@code j}
+ * characters of the pattern have been matched. Stepping a whole set of states over a key character
+ * costs a few word operations, so a search visits every trie node at most once, no matter how many
+ * {@code *} the pattern has.
+ *
+ * <p>State sets are stored in caller-provided {@code long[]} slices of {@link #words()} longs each,
+ * so that matching doesn't allocate. Instances are immutable.
+ */
+final class WildcardPattern {
+  private static final int ASCII_SIZE = 128;
+
+  private final String pattern;
+  private final int words;
+  // bit j is set if pattern position j is a *; after a * the match may stay in place
+  private final long[] starMask;
+  // masks[c] has bit j set if pattern position j is the character c; null if c isn't used
+  private final long[][] asciiMasks = new long[ASCII_SIZE][];
+  // the same for the non-ASCII characters of the pattern, sorted
+  private final char[] otherChars;
+  private final long[][] otherMasks;
+
+  private WildcardPattern(String pattern) {
+    this.pattern = pattern;
+    // one more state than pattern characters: the accepting one
+    this.words = (pattern.length() + 1 + Long.SIZE - 1) / Long.SIZE;
+    this.starMask = new long[words];
+    int[] others = pattern.chars().filter(c -> c >= ASCII_SIZE).distinct().sorted().toArray();
+    this.otherChars = new char[others.length];
+    for (int i = 0; i < others.length; i++) {
+      otherChars[i] = (char) others[i];
+    }
+    this.otherMasks = new long[others.length][];
+    for (int j = 0; j < pattern.length(); j++) {
+      char c = pattern.charAt(j);
+      long[] mask;
+      if (c == '*') {
+        mask = starMask;
+      } else if (c < ASCII_SIZE) {
+        if (asciiMasks[c] == null) {
+          asciiMasks[c] = new long[words];
+        }
+        mask = asciiMasks[c];
+      } else {
+        int index = Arrays.binarySearch(otherChars, c);
+        if (otherMasks[index] == null) {
+          otherMasks[index] = new long[words];
+        }
+        mask = otherMasks[index];
+      }
+      mask[j / Long.SIZE] |= 1L << j;
+    }
+  }
+
+  /**
+   * @param pattern {@code *} matches 0 or more characters; every other character matches itself
+   */
+  static WildcardPattern compile(String pattern) {
+    // runs of * are equivalent to a single one, and without them a single closure step suffices
+    StringBuilder collapsed = new StringBuilder(pattern.length());
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (c != '*' || collapsed.isEmpty() || collapsed.charAt(collapsed.length() - 1) != '*') {
+        collapsed.append(c);
+      }
+    }
+    return new WildcardPattern(collapsed.toString());
+  }
+
+  /**
+   * @return the number of longs in a state set
+   */
+  int words() {
+    return words;
+  }
+
+  /** Writes the states before any character was read to {@code states[offset...]}. */
+  void start(long[] states, int offset) {
+    Arrays.fill(states, offset, offset + words, 0);
+    states[offset] = 1;
+    close(states, offset);
+  }
+
+  /**
+   * Advances the state set at {@code states[offset...]} over {@code c}, in place.
+   *
+   * @return whether any state is still active; if not, no extension of the key can match
+   */
+  boolean step(long[] states, int offset, char c) {
+    long[] literalMask = maskOf(c);
+    // from high to low, so that the carry is read from the lower word before it changes
+    for (int w = words - 1; w >= 0; w--) {
+      long current = states[offset + w];
+      long advanced = literalMask == null ? 0 : current & literalMask[w];
+      long carry =
+          w == 0 || literalMask == null
+              ? 0
+              : (states[offset + w - 1] & literalMask[w - 1]) >>> (Long.SIZE - 1);
+      states[offset + w] = (advanced << 1) | carry | (current & starMask[w]);
+    }
+    return close(states, offset);
+  }
+
+  /**
+   * @return whether the whole pattern was matched
+   */
+  boolean accepts(long[] states, int offset) {
+    int end = pattern.length();
+    return (states[offset + end / Long.SIZE] & (1L << end)) != 0;
+  }
+
+  /**
+   * @return whether every extension of the key read so far matches, because the pattern's final
+   *     {@code *} was reached
+   */
+  boolean acceptsAnySuffix(long[] states, int offset) {
+    int star = pattern.length() - 1;
+    return star >= 0
+        && pattern.charAt(star) == '*'
+        && (states[offset + star / Long.SIZE] & (1L << star)) != 0;
+  }
+
+  /** Adds the states reachable by letting a * match nothing; returns whether any are active. */
+  private boolean close(long[] states, int offset) {
+    long any = 0;
+    for (int w = words - 1; w >= 0; w--) {
+      long carry = w == 0 ? 0 : (states[offset + w - 1] & starMask[w - 1]) >>> (Long.SIZE - 1);
+      long closed = states[offset + w] | ((states[offset + w] & starMask[w]) << 1) | carry;
+      states[offset + w] = closed;
+      any |= closed;
+    }
+    return any != 0;
+  }
+
+  private long[] maskOf(char c) {
+    if (c < ASCII_SIZE) {
+      return asciiMasks[c];
+    }
+    int index = Arrays.binarySearch(otherChars, c);
+    return index < 0 ? null : otherMasks[index];
+  }
+
+  @Override
+  public String toString() {
+    return pattern;
+  }
+}
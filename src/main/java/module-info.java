@@ -14,6 +14,8 @@ module edu.umich.soar.svsviewer {
   exports edu.umich.soar.svsviewer;
   exports edu.umich.soar.svsviewer.command;
   exports edu.umich.soar.svsviewer.util;
+  exports edu.umich.soar.svsviewer.math;
+  exports edu.umich.soar.svsviewer.model;
 
   opens edu.umich.soar.svsviewer.command to
       javafx.fxml;
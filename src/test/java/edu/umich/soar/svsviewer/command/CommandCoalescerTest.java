@@ -0,0 +1,99 @@
+package edu.umich.soar.svsviewer.command;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umich.soar.svsviewer.math.Rgb;
+import edu.umich.soar.svsviewer.math.Vec3;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CommandCoalescerTest {
+
+  private static NameMatcher wildcard(String pattern) {
+    return new NameMatcher(pattern, NameMatcher.NameMatchType.WILDCARD);
+  }
+
+  private static NameMatcher exact(String name) {
+    return new NameMatcher(name, NameMatcher.NameMatchType.EXACT);
+  }
+
+  private static UpdateGeometryCommand update(
+      String scene, String geometry, Vec3 position, Rgb color, Double radius) {
+    return new UpdateGeometryCommand(
+        wildcard(scene),
+        wildcard(geometry),
+        position,
+        null,
+        null,
+        color,
+        null,
+        radius,
+        null,
+        null,
+        null);
+  }
+
+  @Test
+  public void testLaterUpdateWins() {
+    List<Command> actual =
+        CommandCoalescer.coalesce(
+            List.of(
+                update("S1", "foo", new Vec3(1d, 1d, 1d), null, null),
+                update("S1", "bar", new Vec3(5d, 5d, 5d), null, null),
+                update("S1", "foo", new Vec3(2d, 2d, 2d), new Rgb(1d, 0d, 0d), null)));
+    List<Command> expected =
+        List.of(
+            update("S1", "bar", new Vec3(5d, 5d, 5d), null, null),
+            update("S1", "foo", new Vec3(2d, 2d, 2d), new Rgb(1d, 0d, 0d), null));
+
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testFieldsFromEarlierUpdatesAreKept() {
+    List<Command> actual =
+        CommandCoalescer.coalesce(
+            List.of(
+                update("S1", "foo", null, new Rgb(1d, 0d, 0d), 2d),
+                update("S1", "foo", new Vec3(2d, 2d, 2d), null, null)));
+    List<Command> expected =
+        List.of(update("S1", "foo", new Vec3(2d, 2d, 2d), new Rgb(1d, 0d, 0d), 2d));
+
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testNewShapeDropsEarlierColor() {
+    List<Command> actual =
+        CommandCoalescer.coalesce(
+            List.of(
+                update("S1", "foo", null, new Rgb(1d, 0d, 0d), null),
+                update("S1", "foo", null, null, 3d)));
+    List<Command> expected = List.of(update("S1", "foo", null, null, 3d));
+
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testCreateAndDeleteEndTheMergeWindow() {
+    List<Command> commands =
+        List.of(
+            update("S1", "foo", new Vec3(1d, 1d, 1d), null, null),
+            new DeleteGeometryCommand(wildcard("S1"), wildcard("foo")),
+            new CreateGeometryCommand(exact("S1"), "foo"),
+            update("S1", "foo", new Vec3(2d, 2d, 2d), null, null));
+
+    assertEquals(commands, CommandCoalescer.coalesce(commands));
+  }
+
+  @Test
+  public void testWildcardUpdatesAreNotMerged() {
+    List<Command> commands =
+        List.of(
+            update("S1", "foo", new Vec3(1d, 1d, 1d), null, null),
+            update("S1", "f*", new Vec3(3d, 3d, 3d), null, null),
+            update("S1", "foo", new Vec3(2d, 2d, 2d), null, null));
+
+    assertEquals(commands, CommandCoalescer.coalesce(commands));
+  }
+}
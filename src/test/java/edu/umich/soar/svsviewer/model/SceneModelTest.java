@@ -0,0 +1,63 @@
+package edu.umich.soar.svsviewer.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umich.soar.svsviewer.command.Command;
+import edu.umich.soar.svsviewer.math.Rgb;
+import edu.umich.soar.svsviewer.math.Vec3;
+import edu.umich.soar.svsviewer.math.Vertices;
+import edu.umich.soar.svsviewer.parsing.Parser;
+import edu.umich.soar.svsviewer.parsing.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+class SceneModelTest {
+
+  private static void apply(SceneModel model, String... lines) throws Parser.ParsingException {
+    for (String line : lines) {
+      for (Command command : Parser.parse(Tokenizer.tokenizeCommand(line))) {
+        command.apply(model);
+      }
+    }
+  }
+
+  @Test
+  public void testCommandsUpdateModel() throws Parser.ParsingException {
+    SceneModel model = new SceneModel();
+    apply(
+        model,
+        "+S1 +box p 1 2 3 v 0 0 0 1 0 0 0 1 0 0 0 1",
+        "S1 +ball b 0.5 c 1 0 0",
+        "S1 box s 2 2 2");
+
+    GeometryState box = model.getScene("S1").geometries().get("box");
+    assertEquals(new Vec3(1d, 2d, 3d), box.getPosition());
+    assertEquals(new Vec3(2d, 2d, 2d), box.getScale());
+    assertEquals(Vertices.of(0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1), box.getVertices());
+    GeometryState ball = model.getScene("S1").geometries().get("ball");
+    assertEquals(0.5, ball.getRadius());
+    assertEquals(new Rgb(1d, 0d, 0d), ball.getColor());
+    assertEquals(2, model.getGeometryCount());
+  }
+
+  @Test
+  public void testNewShapeResetsColor() throws Parser.ParsingException {
+    SceneModel model = new SceneModel();
+    apply(model, "+S1 +ball b 0.5 c 1 0 0", "S1 ball b 1");
+
+    GeometryState ball = model.getScene("S1").geometries().get("ball");
+    assertEquals(1.0, ball.getRadius());
+    assertNull(ball.getColor());
+  }
+
+  @Test
+  public void testWildcardDelete() throws Parser.ParsingException {
+    SceneModel model = new SceneModel();
+    apply(model, "+S1 +foo1", "S1 +foo2", "S1 +bar", "+S2 +foo3", "S* -foo*");
+
+    assertEquals(1, model.getGeometryCount());
+    assertNotNull(model.getScene("S1").geometries().get("bar"));
+
+    apply(model, "-S*");
+    assertEquals(0, model.getSceneCount());
+  }
+}
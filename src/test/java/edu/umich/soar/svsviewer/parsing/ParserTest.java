@@ -2,7 +2,10 @@ package edu.umich.soar.svsviewer.parsing;
 
 import edu.umich.soar.svsviewer.command.*;
 import edu.umich.soar.svsviewer.parsing.Parser.ParsingException;
-import edu.umich.soar.svsviewer.command.UpdateGeometryCommand.Vertex;
+import edu.umich.soar.svsviewer.math.Quaternion;
+import edu.umich.soar.svsviewer.math.Rgb;
+import edu.umich.soar.svsviewer.math.Vec3;
+import edu.umich.soar.svsviewer.math.Vertices;
 import org.junit.jupiter.api.Test;
 
 import java.util.Collections;
@@ -160,26 +163,22 @@ class ParserTest {
   @Test
   public void testUpdateGeometryVertices() throws ParsingException {
     String s =
-        "S1 foo v 0.5 0.5 0.5 0.5 0.5 -0.5 0.5 -0.5 0.5 0.5 -0.5 -0.5 -0.5 0.5 0.5 -0.5 0.5 -0.5 -0.5 -0.5 0.5 -0.5 -0.5 -0.5   p -0.465155 0.475745 1.15673 r 0 0 0 1  s 0.106014 0.106025 0.11345 c 1 2 3 l 2 w 4.2";
+        "S1 foo v 0.5 0.5 0.5 0.5 0.5 -0.5 0.5 -0.5 0.5 0.5 -0.5 -0.5 -0.5 0.5 0.5 -0.5 0.5 -0.5"
+            + " -0.5 -0.5 0.5 -0.5 -0.5 -0.5   p -0.465155 0.475745 1.15673 r 0 0 0 1  s 0.106014"
+            + " 0.106025 0.11345 c 1 2 3 l 2 w 4.2";
     List<Command> actual = Parser.parse(List.of(s.split("\\s+")));
     List<Command> expected =
         List.of(
             new UpdateGeometryCommand(
                 new NameMatcher("S1", NameMatcher.NameMatchType.WILDCARD),
                 new NameMatcher("foo", NameMatcher.NameMatchType.WILDCARD),
-                List.of(-0.465155, 0.475745, 1.15673),
-                List.of(0.0, 0.0, 0.0, 1.0),
-                List.of(0.106014, 0.106025, 0.11345),
-                List.of(1d, 2d, 3d),
-                List.of(
-                    new Vertex(0.5, 0.5, 0.5),
-                    new Vertex(0.5, 0.5, -0.5),
-                    new Vertex(0.5, -0.5, 0.5),
-                    new Vertex(0.5, -0.5, -0.5),
-                    new Vertex(-0.5, 0.5, 0.5),
-                    new Vertex(-0.5, 0.5, -0.5),
-                    new Vertex(-0.5, -0.5, 0.5),
-                    new Vertex(-0.5, -0.5, -0.5)),
+                new Vec3(-0.465155, 0.475745, 1.15673),
+                new Quaternion(0.0, 0.0, 0.0, 1.0),
+                new Vec3(0.106014, 0.106025, 0.11345),
+                new Rgb(1d, 2d, 3d),
+                Vertices.of(
+                    0.5, 0.5, 0.5, 0.5, 0.5, -0.5, 0.5, -0.5, 0.5, 0.5, -0.5, -0.5, -0.5, 0.5, 0.5,
+                    -0.5, 0.5, -0.5, -0.5, -0.5, 0.5, -0.5, -0.5, -0.5),
                 null,
                 null,
                 2,
@@ -191,17 +190,18 @@ class ParserTest {
   @Test
   public void testUpdateGeometryRadius() throws ParsingException {
     String s =
-        "S1 foo p -0.465155 0.475745 1.15673 r 0 0 0 1  s 0.106014 0.106025 0.11345 c 1 2 3 b 3.4 l 2 w 4.2";
+        "S1 foo p -0.465155 0.475745 1.15673 r 0 0 0 1  s 0.106014 0.106025 0.11345 c 1 2 3 b 3.4 l"
+            + " 2 w 4.2";
     List<Command> actual = Parser.parse(List.of(s.split("\\s+")));
     List<Command> expected =
         List.of(
             new UpdateGeometryCommand(
                 new NameMatcher("S1", NameMatcher.NameMatchType.WILDCARD),
                 new NameMatcher("foo", NameMatcher.NameMatchType.WILDCARD),
-                List.of(-0.465155, 0.475745, 1.15673),
-                List.of(0.0, 0.0, 0.0, 1.0),
-                List.of(0.106014, 0.106025, 0.11345),
-                List.of(1d, 2d, 3d),
+                new Vec3(-0.465155, 0.475745, 1.15673),
+                new Quaternion(0.0, 0.0, 0.0, 1.0),
+                new Vec3(0.106014, 0.106025, 0.11345),
+                new Rgb(1d, 2d, 3d),
                 null,
                 3.4,
                 null,
@@ -214,17 +214,18 @@ class ParserTest {
   @Test
   public void testUpdateGeometryText() throws ParsingException {
     String s =
-        "S1 foo   p -0.465155 0.475745 1.15673 r 0 0 0 1  s 0.106014 0.106025 0.11345 c 1 2 3 l 2 w 4.2 t foo";
+        "S1 foo   p -0.465155 0.475745 1.15673 r 0 0 0 1  s 0.106014 0.106025 0.11345 c 1 2 3 l 2 w"
+            + " 4.2 t foo";
     List<Command> actual = Parser.parse(List.of(s.split("\\s+")));
     List<Command> expected =
         List.of(
             new UpdateGeometryCommand(
                 new NameMatcher("S1", NameMatcher.NameMatchType.WILDCARD),
                 new NameMatcher("foo", NameMatcher.NameMatchType.WILDCARD),
-                List.of(-0.465155, 0.475745, 1.15673),
-                List.of(0.0, 0.0, 0.0, 1.0),
-                List.of(0.106014, 0.106025, 0.11345),
-                List.of(1d, 2d, 3d),
+                new Vec3(-0.465155, 0.475745, 1.15673),
+                new Quaternion(0.0, 0.0, 0.0, 1.0),
+                new Vec3(0.106014, 0.106025, 0.11345),
+                new Rgb(1d, 2d, 3d),
                 null,
                 null,
                 "foo",
@@ -242,6 +243,23 @@ class ParserTest {
         assertThrows(ParsingException.class, () -> Parser.parse(List.of(s.split("\\s+"))));
     assertThat(exception.getMessage())
         .contains(
-            "Only one of vertices, radius or text can be defined in an update command. Found: [vertices, radius, text]");
+            "Only one of vertices, radius or text can be defined in an update command. Found:"
+                + " [vertices, radius, text]");
+  }
+
+  @Test
+  public void testVerticesMustBeMultipleOfThree() {
+    ParsingException exception =
+        assertThrows(
+            ParsingException.class, () -> Parser.parse(List.of("S1", "foo", "v", "1", "2")));
+    assertThat(exception.getMessage()).startsWith("Found 2 vertices (must be multiple of 3)");
+  }
+
+  @Test
+  public void testPositionMissingArgsInvalid() {
+    ParsingException exception =
+        assertThrows(ParsingException.class, () -> Parser.parse(List.of("S1", "foo", "p", "1")));
+    assertThat(exception.getMessage())
+        .startsWith("Expected 3 args to position (p) but found only 1");
   }
 }
@@ -34,4 +34,28 @@ class TokenizerTest {
     List<String> actual = Tokenizer.tokenizeCommand(string);
     assert (actual.isEmpty());
   }
+
+  @Test
+  void testTokenizeCommandSkipsUnterminatedQuote() {
+    final String string = "a \"b c\"d \"e f";
+    List<String> actual = Tokenizer.tokenizeCommand(string);
+    List<String> expected = Arrays.asList("a", "b c", "f");
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void testTokenizeReusesBuffer() {
+    TokenBuffer tokens = new TokenBuffer();
+    Tokenizer.tokenize("+S1 +Apple1 v 0.5 -0.5 1.73205e-07", tokens);
+    assertEquals(6, tokens.size());
+    assertTrue(tokens.tokenEquals(0, "+S1"));
+    assertEquals(0.5, tokens.getDouble(3));
+    assertEquals(-0.5, tokens.getDouble(4));
+    assertEquals(1.73205e-07, tokens.getDouble(5));
+    assertFalse(tokens.isDouble(2));
+
+    Tokenizer.tokenize("S1 foo", tokens);
+    assertEquals(List.of("S1", "foo"), tokens.toList());
+    assertEquals("[S1, foo]", tokens.toString());
+  }
 }
@@ -0,0 +1,246 @@
+package edu.umich.soar.svsviewer.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import edu.umich.soar.svsviewer.ViewerPreferences;
+import edu.umich.soar.svsviewer.command.Command;
+import edu.umich.soar.svsviewer.math.Rgb;
+import edu.umich.soar.svsviewer.model.GeometryState;
+import edu.umich.soar.svsviewer.model.SceneModel;
+import edu.umich.soar.svsviewer.model.SceneState;
+import edu.umich.soar.svsviewer.parsing.Parser;
+import edu.umich.soar.svsviewer.parsing.Tokenizer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.SubScene;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.Shape3D;
+import javafx.scene.shape.Sphere;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.MatrixType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every command changes the display-independent {@link SceneModel} in {@code apply} and the view in
+ * {@code interpret}; this checks that both end up with the same scenes, geometries, transforms,
+ * shapes and colors. Needs a display for the JavaFX toolkit, and is skipped without one.
+ */
+class GeometryManagerTest {
+  private static final String CORPUS = "/edu/umich/soar/svsviewer/thor-soar-input.txt";
+  // lines the sample session echoed back
+  private static final String ECHO_PREFIX = "COMMAND: ";
+  // what the corpus doesn't cover: spheres, colors, shapes replacing colored shapes, wildcards
+  private static final String[] MORE_LINES = {
+    "+S2 +ball b 0.5 c 1 0 0",
+    "S2 +ball2 b 0.25",
+    "S2 ball b 1",
+    "S2 ball2 c 0 0 1",
+    "S1 robot_body c 0 0.5 1",
+    "S1 Apple1 v 0 0 0 1 0 0 0 1 0 0 0 1 c 0 1 0",
+    "S1 Book2 c 1 0 1",
+    "S1 Book2 v 0 0 0 2 0 0 0 2 0 0 0 2",
+    "S* +marker",
+    "S* marker p 1 2 3 c 1 1 0",
+    "S1 B* c 0.25 0.25 0.25",
+    "S1 -Bo*",
+    "+S3 +gone b 1",
+    "-S3"
+  };
+
+  private static boolean fxAvailable;
+
+  @BeforeAll
+  public static void startFx() {
+    try {
+      Platform.startup(() -> {});
+      fxAvailable = true;
+    } catch (IllegalStateException e) {
+      // already started
+      fxAvailable = true;
+    } catch (UnsupportedOperationException | LinkageError e) {
+      // no display
+      fxAvailable = false;
+    }
+  }
+
+  private static List<Command> readCommands() throws IOException, Parser.ParsingException {
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(
+                GeometryManagerTest.class.getResourceAsStream(CORPUS), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(ECHO_PREFIX)) {
+          line = line.substring(ECHO_PREFIX.length());
+        }
+        if (!line.isBlank() && !line.startsWith("#")) {
+          lines.add(line);
+        }
+      }
+    }
+    lines.addAll(List.of(MORE_LINES));
+    List<Command> commands = new ArrayList<>();
+    for (String line : lines) {
+      commands.addAll(Parser.parse(Tokenizer.tokenizeCommand(line)));
+    }
+    return commands;
+  }
+
+  private static <T> T onFxThread(Callable<T> task) throws Exception {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Platform.runLater(
+        () -> {
+          try {
+            result.complete(task.call());
+          } catch (Throwable t) {
+            result.completeExceptionally(t);
+          }
+        });
+    try {
+      return result.get(10, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AssertionError assertionError) {
+        throw assertionError;
+      }
+      throw e;
+    }
+  }
+
+  @Test
+  public void testInterpretMatchesApply() throws Exception {
+    assumeTrue(fxAvailable, "JavaFX can't start without a display");
+    List<Command> commands = readCommands();
+    SceneModel model = new SceneModel();
+    commands.forEach(command -> command.apply(model));
+
+    GeometryManager view =
+        onFxThread(
+            () -> {
+              GeometryManager manager =
+                  new GeometryManager(
+                      new ViewerPreferences(),
+                      new Pane(),
+                      new SubScene(new Group(), 100, 100),
+                      new Group(),
+                      message -> {});
+              for (Command command : commands) {
+                command.prepare(manager.getMeshCache());
+                command.interpret(manager, null);
+              }
+              return manager;
+            });
+    // meshes that weren't ready are attached in later pulses
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!onFxThread(() -> meshesAttached(model, view)) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+
+    onFxThread(
+        () -> {
+          assertSameScenes(model, view);
+          return null;
+        });
+  }
+
+  private static Map<String, SVSScene> scenesByName(GeometryManager view) {
+    Map<String, SVSScene> scenes = new TreeMap<>();
+    view.getScenes().forEach(scene -> scenes.put(scene.name(), scene));
+    return scenes;
+  }
+
+  private static boolean meshesAttached(SceneModel model, GeometryManager view) {
+    Map<String, SVSScene> viewScenes = scenesByName(view);
+    for (SceneState scene : model.getScenes()) {
+      SVSScene viewScene = viewScenes.get(scene.name());
+      for (GeometryState expected : scene.geometries().values()) {
+        Geometry actual = viewScene == null ? null : viewScene.geometries().get(expected.getName());
+        if (expected.getVertices() != null
+            && actual != null
+            && actual.getShape() instanceof MeshView meshView
+            && meshView.getMesh() == null) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void assertSameScenes(SceneModel model, GeometryManager view) {
+    Map<String, SVSScene> viewScenes = scenesByName(view);
+    Set<String> modelSceneNames = new TreeSet<>();
+    model.getScenes().forEach(scene -> modelSceneNames.add(scene.name()));
+    assertEquals(modelSceneNames, viewScenes.keySet());
+
+    for (SceneState scene : model.getScenes()) {
+      SVSScene viewScene = viewScenes.get(scene.name());
+      assertEquals(
+          new TreeSet<>(scene.geometries().keySet()),
+          new TreeSet<>(viewScene.geometries().keySet()),
+          scene.name());
+      for (GeometryState expected : scene.geometries().values()) {
+        assertSameGeometry(
+            scene.name() + "." + expected.getName(),
+            expected,
+            viewScene.geometries().get(expected.getName()),
+            view);
+      }
+    }
+  }
+
+  private static void assertSameGeometry(
+      String what, GeometryState expected, Geometry actual, GeometryManager view) {
+    Affine expectedTransform = new Affine();
+    Geometry.writeTransform(
+        expectedTransform, expected.getPosition(), expected.getRotation(), expected.getScale());
+    assertArrayEquals(
+        expectedTransform.toArray(MatrixType.MT_3D_3x4),
+        actual.getTransform().toArray(MatrixType.MT_3D_3x4),
+        what);
+
+    Shape3D shape = actual.getShape();
+    if (expected.getVertices() != null) {
+      MeshView meshView = assertInstanceOf(MeshView.class, shape, what);
+      assertSame(
+          view.getMeshCache().getMesh(expected.getVertices()).join(), meshView.getMesh(), what);
+    } else if (expected.getRadius() != null) {
+      Sphere sphere = assertInstanceOf(Sphere.class, shape, what);
+      assertEquals(expected.getRadius(), sphere.getRadius(), what);
+    } else {
+      // no shape yet, or text, which the view doesn't draw
+      assertNull(shape, what);
+      return;
+    }
+
+    PhongMaterial material = (PhongMaterial) shape.getMaterial();
+    Rgb color = expected.getColor();
+    if (color == null) {
+      PhongMaterial defaultMaterial =
+          view.getMaterials().get(MaterialRegistry.DEFAULT_COLOR, MaterialRegistry.Style.SHINY);
+      // spheres are left with JavaFX's default material
+      assertTrue(material == null || material == defaultMaterial, what);
+    } else {
+      assertSame(
+          view.getMaterials()
+              .get(
+                  new Color(color.red(), color.green(), color.blue(), 1),
+                  MaterialRegistry.Style.PLAIN),
+          material,
+          what);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package edu.umich.soar.svsviewer.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umich.soar.svsviewer.math.Quaternion;
+import edu.umich.soar.svsviewer.math.Vec3;
+import edu.umich.soar.svsviewer.util.DrawingMode;
+import java.util.List;
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.Sphere;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Transform;
+import javafx.scene.transform.Translate;
+import org.junit.jupiter.api.Test;
+
+public class GeometryTest {
+  private static final PhongMaterial LINES = new PhongMaterial(Color.BLACK);
+  private static final TriangleMesh CUBE =
+      MeshBuilder.build(MeshBuilderTest.UNIT_CUBE).toTriangleMesh();
+
+  @Test
+  public void testTransformMatchesTranslateRotateScale() {
+    Vec3 position = new Vec3(1.5, -0.25, 0.900999);
+    Vec3 scale = new Vec3(2, 0.5, 3);
+    // 90 degrees about z, as SVS sends it
+    Quaternion rotation = new Quaternion(0, 0, 0.707107, 0.707107);
+    Affine affine = new Affine();
+
+    Geometry.writeTransform(affine, position, rotation, scale);
+
+    Transform expected =
+        new Translate(position.x(), position.y(), position.z())
+            .createConcatenation(new Rotate(90, Rotate.Z_AXIS))
+            .createConcatenation(new Scale(scale.x(), scale.y(), scale.z()));
+    for (Point3D point :
+        new Point3D[] {new Point3D(0, 0, 0), new Point3D(1, 0, 0), new Point3D(0.3, -2, 5)}) {
+      Point3D actual = affine.transform(point);
+      assertEquals(0, actual.distance(expected.transform(point)), 1e-5, "at " + point);
+    }
+  }
+
+  @Test
+  public void testArbitraryAxisRotation() {
+    double angle = 0.8;
+    Point3D axis = new Point3D(1, 2, -1).normalize();
+    double sin = Math.sin(angle / 2);
+    Quaternion rotation =
+        new Quaternion(
+            axis.getX() * sin, axis.getY() * sin, axis.getZ() * sin, Math.cos(angle / 2));
+    Affine affine = new Affine();
+
+    Geometry.writeTransform(affine, new Vec3(0, 0, 0), rotation, new Vec3(1, 1, 1));
+
+    Rotate expected = new Rotate(Math.toDegrees(angle), axis);
+    Point3D point = new Point3D(0.5, -1, 2);
+    assertEquals(0, affine.transform(point).distance(expected.transform(point)), 1e-9);
+  }
+
+  @Test
+  public void testFillModeCreatesNoLineGroup() {
+    SVSScene scene = new SVSScene("S1");
+    Geometry geometry = new Geometry("g", scene, LINES);
+    geometry.startNewShape();
+    geometry.setShape(new MeshView(CUBE));
+
+    geometry.setDrawingMode(DrawingMode.FILL);
+
+    assertNull(geometry.getLineGroup());
+    assertTrue(scene.root().getChildren().isEmpty());
+  }
+
+  @Test
+  public void testLineModeBindsWireframeToMeshAttachedLater() {
+    SVSScene scene = new SVSScene("S1");
+    Geometry geometry = new Geometry("g", scene, LINES);
+    geometry.setDrawingMode(DrawingMode.LINE);
+    Group lineGroup = geometry.getLineGroup();
+    assertNotNull(lineGroup);
+    assertTrue(lineGroup.isVisible());
+    assertFalse(geometry.getGroup().isVisible());
+    assertEquals(List.of(lineGroup), scene.root().getChildren());
+
+    // as UpdateGeometryCommand does: the view is shown first, the mesh attached once it is built
+    geometry.startNewShape();
+    MeshView view = new MeshView();
+    geometry.setShape(view);
+    MeshView wireframe = (MeshView) lineGroup.getChildren().getFirst();
+    assertNull(wireframe.getMesh());
+    view.setMesh(CUBE);
+
+    assertSame(CUBE, wireframe.getMesh());
+    assertEquals(DrawMode.LINE, wireframe.getDrawMode());
+    assertSame(LINES, wireframe.getMaterial());
+    assertSame(geometry.getTransform(), lineGroup.getTransforms().getFirst());
+  }
+
+  @Test
+  public void testLineModeCopiesSpheres() {
+    SVSScene scene = new SVSScene("S1");
+    Geometry geometry = new Geometry("g", scene, LINES);
+    geometry.startNewShape();
+    geometry.setShape(new Sphere(2));
+
+    geometry.setDrawingMode(DrawingMode.FILL_AND_LINE);
+
+    Sphere wireframe = (Sphere) geometry.getLineGroup().getChildren().getFirst();
+    assertEquals(2, wireframe.getRadius());
+    assertEquals(DrawMode.LINE, wireframe.getDrawMode());
+    assertTrue(geometry.getGroup().isVisible());
+  }
+
+  @Test
+  public void testDiscardLineGroupOnlyReleasesHiddenGroups() {
+    SVSScene scene = new SVSScene("S1");
+    Geometry geometry = new Geometry("g", scene, LINES);
+    geometry.startNewShape();
+    MeshView view = new MeshView(CUBE);
+    geometry.setShape(view);
+    geometry.setDrawingMode(DrawingMode.FILL_AND_LINE);
+    MeshView wireframe = (MeshView) geometry.getLineGroup().getChildren().getFirst();
+
+    assertEquals(0, geometry.discardLineGroup(), "Expected shown wireframes to be kept");
+    assertNotNull(geometry.getLineGroup());
+
+    geometry.setDrawingMode(DrawingMode.FILL);
+    // the group and the wireframe mesh view
+    assertEquals(2, geometry.discardLineGroup());
+    assertNull(geometry.getLineGroup());
+    assertTrue(scene.root().getChildren().isEmpty());
+    assertFalse(wireframe.meshProperty().isBound(), "Expected the wireframe to be unbound");
+    assertEquals(0, geometry.discardLineGroup());
+
+    // rebuilt when needed again
+    geometry.setDrawingMode(DrawingMode.LINE);
+    assertSame(CUBE, ((MeshView) geometry.getLineGroup().getChildren().getFirst()).getMesh());
+  }
+}
@@ -0,0 +1,48 @@
+package edu.umich.soar.svsviewer.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import org.junit.jupiter.api.Test;
+
+public class MaterialRegistryTest {
+
+  @Test
+  public void testSameColorSharesMaterial() {
+    MaterialRegistry materials = new MaterialRegistry();
+
+    PhongMaterial red = materials.get(new Color(1, 0, 0, 1), MaterialRegistry.Style.PLAIN);
+
+    assertSame(red, materials.get(Color.RED, MaterialRegistry.Style.PLAIN));
+    assertEquals(1, materials.size(), "Expected size=1");
+  }
+
+  @Test
+  public void testColorsAreRoundedTo8Bits() {
+    MaterialRegistry materials = new MaterialRegistry();
+
+    PhongMaterial gray = materials.get(new Color(0.5, 0.5, 0.5, 1), MaterialRegistry.Style.PLAIN);
+
+    assertSame(gray, materials.get(Color.rgb(128, 128, 128), MaterialRegistry.Style.PLAIN));
+    assertSame(gray, materials.get(new Color(0.5015, 0.502, 0.5, 1), MaterialRegistry.Style.PLAIN));
+    assertEquals(Color.rgb(128, 128, 128), gray.getDiffuseColor());
+    // a color that changes a little with every update
+    for (int i = 0; i < 10_000; i++) {
+      materials.get(new Color(i / 10_000.0, 0, 0, 1), MaterialRegistry.Style.PLAIN);
+    }
+    assertEquals(257, materials.size());
+  }
+
+  @Test
+  public void testStylesAreSeparate() {
+    MaterialRegistry materials = new MaterialRegistry();
+
+    PhongMaterial plain = materials.get(Color.RED, MaterialRegistry.Style.PLAIN);
+    PhongMaterial shiny = materials.get(Color.RED, MaterialRegistry.Style.SHINY);
+
+    assertNotSame(plain, shiny);
+    assertNull(plain.getSpecularColor());
+    assertEquals(Color.WHITE, shiny.getSpecularColor());
+  }
+}
@@ -0,0 +1,108 @@
+package edu.umich.soar.svsviewer.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umich.soar.svsviewer.math.Vertices;
+import org.junit.jupiter.api.Test;
+
+public class MeshBuilderTest {
+  // as sent by SVS for most objects, which are then scaled
+  static final Vertices UNIT_CUBE =
+      Vertices.of(
+          0.5, 0.5, 0.5, 0.5, 0.5, -0.5, 0.5, -0.5, 0.5, 0.5, -0.5, -0.5, -0.5, 0.5, 0.5, -0.5, 0.5,
+          -0.5, -0.5, -0.5, 0.5, -0.5, -0.5, -0.5);
+
+  @Test
+  public void testBoxIsBuiltWithoutHull() {
+    MeshBuilder.MeshData box = MeshBuilder.buildPrimitive(UNIT_CUBE);
+
+    assertNotNull(box, "Expected an axis-aligned box to be recognized");
+    assertEquals(8, box.points().length / 3);
+    assertEquals(12, box.faces().length / 3);
+    assertFacesPointOutward(box);
+  }
+
+  @Test
+  public void testBoxMatchesHullVolume() {
+    Vertices box =
+        Vertices.of(0, 0, 0, 2, 0, 0, 0, 3, 0, 2, 3, 0, 0, 0, 4, 2, 0, 4, 0, 3, 4, 2, 3, 4);
+
+    assertEquals(24, volume(MeshBuilder.buildPrimitive(box)), 1e-6);
+    assertEquals(24, volume(MeshBuilder.convexHull(box)), 1e-6);
+  }
+
+  @Test
+  public void testRotatedBoxNeedsHull() {
+    double s = Math.sqrt(0.5);
+    Vertices rotated =
+        Vertices.of(
+            s, 0, 0.5, s, 0, -0.5, 0, s, 0.5, 0, s, -0.5, -s, 0, 0.5, -s, 0, -0.5, 0, -s, 0.5, 0,
+            -s, -0.5);
+
+    assertNull(MeshBuilder.buildPrimitive(rotated));
+    assertNotNull(MeshBuilder.build(rotated));
+  }
+
+  @Test
+  public void testRepeatedCornerIsNotABox() {
+    Vertices notABox =
+        Vertices.of(0, 0, 0, 0, 0, 0, 0, 1, 0, 1, 1, 0, 0, 0, 1, 1, 0, 1, 0, 1, 1, 1, 1, 1);
+
+    assertNull(MeshBuilder.buildPrimitive(notABox));
+  }
+
+  @Test
+  public void testFewerThanFourVertices() {
+    MeshBuilder.MeshData point = MeshBuilder.build(Vertices.of(1, 2, 3));
+    MeshBuilder.MeshData segment = MeshBuilder.build(Vertices.of(0, 0, 0, 1, 2, 3));
+    MeshBuilder.MeshData triangle = MeshBuilder.build(Vertices.of(0, 0, 0, 1, 0, 0, 0, 1, 0));
+
+    assertEquals(8, point.faces().length / 3);
+    assertFacesPointOutward(point);
+    assertEquals(8, segment.faces().length / 3);
+    assertFacesPointOutward(segment);
+    // both sides
+    assertEquals(2, triangle.faces().length / 3);
+  }
+
+  /** By the divergence theorem; positive if all faces wind counterclockwise seen from outside */
+  private static double volume(MeshBuilder.MeshData mesh) {
+    float[] p = mesh.points();
+    int[] f = mesh.faces();
+    double volume = 0;
+    for (int i = 0; i < f.length; i += 3) {
+      int a = f[i] * 3;
+      int b = f[i + 1] * 3;
+      int c = f[i + 2] * 3;
+      volume +=
+          p[a] * (p[b + 1] * p[c + 2] - p[b + 2] * p[c + 1])
+              - p[a + 1] * (p[b] * p[c + 2] - p[b + 2] * p[c])
+              + p[a + 2] * (p[b] * p[c + 1] - p[b + 1] * p[c]);
+    }
+    return volume / 6;
+  }
+
+  private static void assertFacesPointOutward(MeshBuilder.MeshData mesh) {
+    float[] p = mesh.points();
+    int[] f = mesh.faces();
+    double[] center = new double[3];
+    for (int i = 0; i < p.length; i++) {
+      center[i % 3] += p[i] * 3.0 / p.length;
+    }
+    for (int i = 0; i < f.length; i += 3) {
+      int a = f[i] * 3;
+      int b = f[i + 1] * 3;
+      int c = f[i + 2] * 3;
+      double[] ab = {p[b] - p[a], p[b + 1] - p[a + 1], p[b + 2] - p[a + 2]};
+      double[] ac = {p[c] - p[a], p[c + 1] - p[a + 1], p[c + 2] - p[a + 2]};
+      double[] normal = {
+        ab[1] * ac[2] - ab[2] * ac[1], ab[2] * ac[0] - ab[0] * ac[2], ab[0] * ac[1] - ab[1] * ac[0]
+      };
+      double outward =
+          normal[0] * (p[a] - center[0])
+              + normal[1] * (p[a + 1] - center[1])
+              + normal[2] * (p[a + 2] - center[2]);
+      assertTrue(outward > 0, "Expected face " + i / 3 + " to point outward");
+    }
+  }
+}
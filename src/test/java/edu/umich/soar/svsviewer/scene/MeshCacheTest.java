@@ -0,0 +1,93 @@
+package edu.umich.soar.svsviewer.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umich.soar.svsviewer.math.Vertices;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javafx.scene.shape.TriangleMesh;
+import org.junit.jupiter.api.Test;
+
+public class MeshCacheTest {
+  private static final Vertices TETRAHEDRON =
+      Vertices.of(new double[] {0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1});
+
+  @Test
+  public void testBuildsOnWorkersOnce() {
+    List<Runnable> tasks = new ArrayList<>();
+    MeshCache cache = new MeshCache(MeshCache.DEFAULT_CAPACITY, tasks::add);
+
+    CompletableFuture<TriangleMesh> first = cache.getMesh(TETRAHEDRON);
+    CompletableFuture<TriangleMesh> second = cache.getMesh(Vertices.of(TETRAHEDRON.toArray()));
+
+    assertSame(first, second);
+    assertEquals(1, tasks.size(), "Expected a single hull computation");
+    assertFalse(first.isDone(), "Expected the hull to be built by the workers");
+    tasks.getFirst().run();
+    assertEquals(4, first.join().getFaces().size() / 6);
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testBuildsBoxesRightAway() {
+    List<Runnable> tasks = new ArrayList<>();
+    MeshCache cache = new MeshCache(MeshCache.DEFAULT_CAPACITY, tasks::add);
+
+    CompletableFuture<TriangleMesh> mesh = cache.getMesh(MeshBuilderTest.UNIT_CUBE);
+
+    assertTrue(mesh.isDone(), "Expected the box to be built without a worker");
+    assertTrue(tasks.isEmpty());
+  }
+
+  @Test
+  public void testDegenerateVerticesFailTheFuture() {
+    MeshCache cache = new MeshCache(MeshCache.DEFAULT_CAPACITY, Runnable::run);
+
+    CompletableFuture<TriangleMesh> mesh =
+        cache.getMesh(Vertices.of(new double[] {0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 1, 0}));
+
+    assertTrue(mesh.isCompletedExceptionally(), "Expected coplanar vertices to have no hull");
+  }
+
+  private static Vertices box(double size) {
+    double h = size / 2;
+    return Vertices.of(
+        new double[] {
+          h, h, h, h, h, -h, h, -h, h, h, -h, -h, -h, h, h, -h, h, -h, -h, -h, h, -h, -h, -h
+        });
+  }
+
+  @Test
+  public void testEqualVerticesShareOneMesh() {
+    MeshCache cache = new MeshCache(MeshCache.DEFAULT_CAPACITY, Runnable::run);
+
+    TriangleMesh first = cache.getMesh(box(1)).join();
+    TriangleMesh second = cache.getMesh(box(1)).join();
+    TriangleMesh other = cache.getMesh(box(2)).join();
+
+    assertSame(first, second, "Expected equal vertices to share the mesh instance");
+    assertNotSame(first, other);
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedAtCapacity() {
+    MeshCache cache = new MeshCache(2, Runnable::run);
+    TriangleMesh one = cache.getMesh(box(1)).join();
+    TriangleMesh two = cache.getMesh(box(2)).join();
+    // makes box(2) the least recently used
+    cache.getMesh(box(1));
+
+    cache.getMesh(box(3));
+
+    assertEquals(2, cache.size());
+    assertSame(one, cache.getMesh(box(1)).join());
+    assertEquals(3, cache.getMisses());
+    assertNotSame(two, cache.getMesh(box(2)).join(), "Expected box(2) to have been evicted");
+    assertEquals(4, cache.getMisses());
+  }
+}
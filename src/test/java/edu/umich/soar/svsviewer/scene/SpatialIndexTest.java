@@ -0,0 +1,98 @@
+package edu.umich.soar.svsviewer.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umich.soar.svsviewer.math.Quaternion;
+import edu.umich.soar.svsviewer.math.Vec3;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import org.junit.jupiter.api.Test;
+
+public class SpatialIndexTest {
+  private static final PhongMaterial LINES = new PhongMaterial(Color.BLACK);
+
+  private static Geometry cube(SVSScene scene, String name, Vec3 position) {
+    Geometry geometry = new Geometry(name, scene, LINES);
+    geometry.setShape(new MeshView(MeshBuilder.build(MeshBuilderTest.UNIT_CUBE).toTriangleMesh()));
+    geometry.setTransform(position, null, null);
+    return geometry;
+  }
+
+  @Test
+  public void testComputeBoxAppliesTheTransform() {
+    SVSScene scene = new SVSScene("S1");
+    Geometry geometry = cube(scene, "box", new Vec3(10, 0, 0));
+    // a quarter turn around z swaps the x and y extents
+    double half = Math.sqrt(0.5);
+    geometry.setTransform(null, new Quaternion(0, 0, half, half), new Vec3(2, 4, 1));
+    double[] box = new double[6];
+
+    assertTrue(SpatialIndex.computeBox(geometry, box));
+
+    double[] expected = {8, -1, -0.5, 12, 1, 0.5};
+    assertArrayEquals(expected, box, 1e-9);
+  }
+
+  @Test
+  public void testBoxesAreUpdatedOncePerFrame() {
+    SVSScene scene = new SVSScene("S1");
+    SpatialIndex index = new SpatialIndex();
+    Geometry near = cube(scene, "near", new Vec3(0, 0, 0));
+    Geometry far = cube(scene, "far", new Vec3(50, 0, 0));
+    Geometry empty = new Geometry("empty", scene, LINES);
+    index.modified(near);
+    index.modified(far);
+    index.modified(empty);
+    index.onFrame();
+    assertEquals(2, index.size(), "Expected geometries without a shape not to be indexed");
+
+    index.modified(far);
+    far.setTransform(new Vec3(2, 0, 0), null, null);
+    List<Geometry> found = new ArrayList<>();
+    index.queryRadius(scene, 2, 0, 0, 0.1, found::add);
+    assertEquals(List.of(), found, "Expected the move to show up only after the frame");
+    index.onFrame();
+    index.queryRadius(scene, 2, 0, 0, 0.1, found::add);
+    assertEquals(List.of(far), found);
+
+    assertSame(near, index.pick(scene, -10, 0, 0, 1, 0, 0));
+    index.remove(near);
+    assertSame(far, index.pick(scene, -10, 0, 0, 1, 0, 0));
+    index.removeScene(scene);
+    assertEquals(0, index.size());
+    assertNull(index.pick(scene, -10, 0, 0, 1, 0, 0));
+  }
+
+  @Test
+  public void testMeshesFinishingAfterDeletionDontReindex() {
+    SVSScene scene = new SVSScene("S1");
+    SpatialIndex index = new SpatialIndex();
+    StaticBatcher batcher = new StaticBatcher();
+    batcher.setStaticFrames(1);
+    // +S1 g v <non-box vertices>: the hull is still being built when the geometry is deleted
+    Geometry geometry = new Geometry("g", scene, LINES);
+    index.modified(geometry);
+    batcher.add(geometry);
+    long shape = geometry.startNewShape();
+
+    // -S1 g in the same frame
+    geometry.markRemoved();
+    index.remove(geometry);
+    batcher.remove(geometry);
+
+    // what GeometryManager.attachMesh does once the hull is built
+    assertFalse(geometry.isCurrentShape(shape), "Expected the late mesh to be dropped");
+    geometry.setShape(new MeshView(MeshBuilder.build(MeshBuilderTest.UNIT_CUBE).toTriangleMesh()));
+    index.modified(geometry);
+    batcher.modified(geometry);
+    index.onFrame();
+    batcher.onFrame();
+
+    assertEquals(0, index.size());
+    assertNull(index.pick(scene, -10, 0, 0, 1, 0, 0));
+    assertEquals(0, batcher.bakedCount());
+  }
+}
@@ -0,0 +1,77 @@
+package edu.umich.soar.svsviewer.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umich.soar.svsviewer.math.Quaternion;
+import edu.umich.soar.svsviewer.math.Vec3;
+import edu.umich.soar.svsviewer.math.Vertices;
+import java.util.List;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Affine;
+import org.junit.jupiter.api.Test;
+
+public class StaticBatcherTest {
+  private static final TriangleMesh TETRAHEDRON =
+      MeshBuilder.convexHull(Vertices.of(0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1)).toTriangleMesh();
+
+  @Test
+  public void testCombineTransformsAndOffsetsFaces() {
+    Affine moved = new Affine();
+    Geometry.writeTransform(moved, new Vec3(10, 0, 0), Quaternion.IDENTITY, new Vec3(2, 2, 2));
+
+    TriangleMesh combined =
+        StaticBatcher.combine(List.of(TETRAHEDRON, TETRAHEDRON), List.of(new Affine(), moved));
+
+    assertEquals(8 * 3, combined.getPoints().size());
+    assertEquals(8 * 6, combined.getFaces().size());
+    // the second copy's vertex (1, 0, 0), scaled and moved
+    assertEquals(12, combined.getPoints().get(4 * 3 + 3), 1e-6);
+    int[] faces = combined.getFaces().toArray(null);
+    for (int i = 4 * 6; i < faces.length; i += 2) {
+      assertTrue(faces[i] >= 4, "Expected the second copy's faces to use its own points");
+      assertEquals(0, faces[i + 1]);
+    }
+  }
+
+  @Test
+  public void testBakesStaticGeometriesAndUnbakesModifiedOnes() {
+    SVSScene scene = new SVSScene("S1");
+    PhongMaterial material = new PhongMaterial(Color.RED);
+    PhongMaterial lines = new PhongMaterial(Color.BLACK);
+    StaticBatcher batcher = new StaticBatcher();
+    batcher.setStaticFrames(3);
+    Geometry[] geometries = new Geometry[3];
+    for (int i = 0; i < geometries.length; i++) {
+      Geometry geometry = new Geometry("g" + i, scene, lines);
+      MeshView view = new MeshView(TETRAHEDRON);
+      view.setMaterial(material);
+      geometry.setShape(view);
+      scene.root().getChildren().add(geometry.getGroup());
+      batcher.add(geometry);
+      geometries[i] = geometry;
+    }
+
+    batcher.onFrame();
+    batcher.onFrame();
+    assertEquals(0, batcher.bakedCount(), "Expected nothing to be baked before 3 frames");
+    batcher.onFrame();
+    assertEquals(3, batcher.bakedCount());
+    assertEquals(1, batcher.batchCount());
+    // just the combined mesh
+    assertEquals(1, scene.root().getChildren().size());
+
+    batcher.modified(geometries[1]);
+    batcher.onFrame();
+    assertEquals(2, batcher.bakedCount());
+    assertTrue(scene.root().getChildren().contains(geometries[1].getGroup()));
+    MeshView batchView = (MeshView) scene.root().getChildren().getFirst();
+    assertEquals(8 * 3, ((TriangleMesh) batchView.getMesh()).getPoints().size());
+
+    batcher.setStaticFrames(0);
+    assertEquals(0, batcher.bakedCount());
+    assertEquals(3, scene.root().getChildren().size(), "Expected only the geometries' groups");
+  }
+}
@@ -0,0 +1,61 @@
+package edu.umich.soar.svsviewer.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalTest {
+  @TempDir Path tempDir;
+
+  private Path record(List<String> lines) throws IOException {
+    Path path = tempDir.resolve("session.sgelj");
+    try (JournalWriter journal = new JournalWriter(path)) {
+      for (String line : lines) {
+        journal.write(line);
+      }
+    }
+    return path;
+  }
+
+  @Test
+  public void testReplayReturnsRecordedLines() throws IOException {
+    List<String> lines = List.of("S1 +foo", "", "S1 foo p 1 2 3", "S1 \"grün\" c 0 1 0");
+    Path path = record(lines);
+
+    List<String> replayed = new ArrayList<>();
+    long count = new JournalReplay(path, JournalReplay.MAX_SPEED, replayed::add).replay();
+
+    assertEquals(lines.size(), count);
+    assertEquals(lines, replayed);
+  }
+
+  @Test
+  public void testTruncatedLastRecordIsIgnored() throws IOException {
+    Path path = record(List.of("S1 +foo", "S1 foo p 1 2 3"));
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    List<String> replayed = new ArrayList<>();
+    new JournalReplay(path, JournalReplay.MAX_SPEED, replayed::add).replay();
+
+    assertEquals(List.of("S1 +foo"), replayed);
+  }
+
+  @Test
+  public void testRejectsFilesThatAreNotJournals() throws IOException {
+    Path path = tempDir.resolve("input.txt");
+    Files.writeString(path, "S1 +foo\nS1 foo p 1 2 3\n");
+
+    JournalReplay replay = new JournalReplay(path, 1, line -> fail("no lines expected"));
+    assertThrows(IOException.class, replay::replay);
+  }
+}
@@ -0,0 +1,224 @@
+package edu.umich.soar.svsviewer.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+public class AabbTreeTest {
+  private static final int COUNT = 2000;
+
+  // boxes[i] = min x, y, z, max x, y, z of item i
+  private static double[][] randomBoxes(Random random, int count) {
+    double[][] boxes = new double[count][];
+    for (int i = 0; i < count; i++) {
+      boxes[i] = randomBox(random);
+    }
+    return boxes;
+  }
+
+  private static double[] randomBox(Random random) {
+    double x = random.nextDouble() * 100;
+    double y = random.nextDouble() * 100;
+    double z = random.nextDouble() * 100;
+    return new double[] {
+      x, y, z, x + random.nextDouble() * 2, y + random.nextDouble() * 2, z + random.nextDouble() * 2
+    };
+  }
+
+  private static int insert(AabbTree<Integer> tree, int item, double[] box) {
+    return tree.insert(item, box[0], box[1], box[2], box[3], box[4], box[5]);
+  }
+
+  private static Set<Integer> queryRadius(AabbTree<Integer> tree, double[] query) {
+    Set<Integer> found = new HashSet<>();
+    tree.queryRadius(query[0], query[1], query[2], query[3], found::add);
+    return found;
+  }
+
+  private static Set<Integer> bruteForceRadius(Map<Integer, double[]> boxes, double[] query) {
+    Set<Integer> found = new HashSet<>();
+    boxes.forEach(
+        (item, box) -> {
+          double distanceSquared = 0;
+          for (int axis = 0; axis < 3; axis++) {
+            double d = Math.max(0, Math.max(box[axis] - query[axis], query[axis] - box[axis + 3]));
+            distanceSquared += d * d;
+          }
+          if (distanceSquared <= query[3] * query[3]) {
+            found.add(item);
+          }
+        });
+    return found;
+  }
+
+  @Test
+  public void testRadiusQueriesMatchBruteForceThroughUpdatesAndRemovals() {
+    Random random = new Random(1);
+    AabbTree<Integer> tree = new AabbTree<>(0.1);
+    Map<Integer, double[]> boxes = new HashMap<>();
+    int[] ids = new int[COUNT];
+    double[][] initial = randomBoxes(random, COUNT);
+    for (int i = 0; i < COUNT; i++) {
+      ids[i] = insert(tree, i, initial[i]);
+      boxes.put(i, initial[i]);
+    }
+    // small moves stay inside the fat boxes, large ones don't
+    for (int i = 0; i < COUNT; i += 3) {
+      double[] box = boxes.get(i).clone();
+      double shift = i % 2 == 0 ? 0.05 : 20;
+      box[0] += shift;
+      box[3] += shift;
+      tree.update(ids[i], box[0], box[1], box[2], box[3], box[4], box[5]);
+      boxes.put(i, box);
+    }
+    for (int i = 1; i < COUNT; i += 4) {
+      tree.remove(ids[i]);
+      boxes.remove(i);
+    }
+
+    assertEquals(boxes.size(), tree.size());
+    for (int q = 0; q < 200; q++) {
+      double[] query = {
+        random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100, 5
+      };
+      assertEquals(bruteForceRadius(boxes, query), queryRadius(tree, query));
+    }
+  }
+
+  @Test
+  public void testStaysBalanced() {
+    AabbTree<Integer> tree = new AabbTree<>(0.1);
+    // sorted insertion would degenerate into a list without rotations
+    for (int i = 0; i < COUNT; i++) {
+      tree.insert(i, i, 0, 0, i + 0.5, 1, 1);
+    }
+    double log2 = Math.log(COUNT) / Math.log(2);
+    assertThat(tree.height()).isLessThanOrEqualTo((int) Math.ceil(1.44 * log2) + 2);
+  }
+
+  @Test
+  public void testSmallMovesDontChangeTheTree() {
+    AabbTree<String> tree = new AabbTree<>(0.1);
+    int id = tree.insert("a", 0, 0, 0, 1, 1, 1);
+
+    assertFalse(tree.update(id, 0.05, 0, 0, 1.05, 1, 1));
+    assertTrue(tree.update(id, 5, 0, 0, 6, 1, 1));
+    // queries use the exact box, not the fat one
+    List<String> found = new ArrayList<>();
+    tree.queryRadius(4.95, 0.5, 0.5, 0.01, found::add);
+    assertEquals(List.of(), found);
+    tree.queryRadius(5, 0.5, 0.5, 0.01, found::add);
+    assertEquals(List.of("a"), found);
+  }
+
+  @Test
+  public void testPickFindsTheNearestHit() {
+    Random random = new Random(2);
+    AabbTree<Integer> tree = new AabbTree<>(0.1);
+    double[][] boxes = randomBoxes(random, COUNT);
+    for (int i = 0; i < COUNT; i++) {
+      insert(tree, i, boxes[i]);
+    }
+    for (int q = 0; q < 200; q++) {
+      double[] origin = {-10, random.nextDouble() * 100, random.nextDouble() * 100};
+      double[] direction = {1, random.nextDouble() - 0.5, random.nextDouble() - 0.5};
+      Integer expected = null;
+      double nearest = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < COUNT; i++) {
+        double distance = entryDistance(boxes[i], origin, direction);
+        if (distance < nearest) {
+          nearest = distance;
+          expected = i;
+        }
+      }
+
+      Integer picked =
+          tree.pick(
+              origin[0],
+              origin[1],
+              origin[2],
+              direction[0],
+              direction[1],
+              direction[2],
+              Double.POSITIVE_INFINITY);
+
+      if (expected == null) {
+        assertNull(picked);
+      } else {
+        assertNotNull(picked);
+        // ties are possible only in theory; compare distances rather than items
+        assertEquals(nearest, entryDistance(boxes[picked], origin, direction), 1e-9);
+      }
+    }
+  }
+
+  private static double entryDistance(double[] box, double[] origin, double[] direction) {
+    double near = 0;
+    double far = Double.POSITIVE_INFINITY;
+    for (int axis = 0; axis < 3; axis++) {
+      double t1 = (box[axis] - origin[axis]) / direction[axis];
+      double t2 = (box[axis + 3] - origin[axis]) / direction[axis];
+      near = Math.max(near, Math.min(t1, t2));
+      far = Math.min(far, Math.max(t1, t2));
+    }
+    return near <= far ? near : Double.POSITIVE_INFINITY;
+  }
+
+  @Test
+  public void testPickRespectsMaxDistanceAndMisses() {
+    AabbTree<String> tree = new AabbTree<>(0.1);
+    tree.insert("near", 5, -1, -1, 6, 1, 1);
+    tree.insert("far", 10, -1, -1, 11, 1, 1);
+
+    assertEquals("near", tree.pick(0, 0, 0, 1, 0, 0, Double.POSITIVE_INFINITY));
+    assertEquals("far", tree.pick(20, 0, 0, -1, 0, 0, Double.POSITIVE_INFINITY));
+    assertNull(tree.pick(0, 0, 0, 1, 0, 0, 4));
+    assertNull(tree.pick(0, 5, 0, 1, 0, 0, Double.POSITIVE_INFINITY));
+    // starting inside a box hits it right away
+    assertEquals("far", tree.pick(10.5, 0, 0, 1, 0, 0, Double.POSITIVE_INFINITY));
+  }
+
+  @Test
+  public void testFrustumQueryMatchesBruteForce() {
+    Random random = new Random(3);
+    AabbTree<Integer> tree = new AabbTree<>(0.1);
+    double[][] boxes = randomBoxes(random, COUNT);
+    for (int i = 0; i < COUNT; i++) {
+      insert(tree, i, boxes[i]);
+    }
+    // a pyramid looking down +x from the origin, cut off at x = 60
+    double[] planes = {
+      1, -1, 0, 0, // x >= y
+      1, 0, -1, 0, // x >= z
+      0, 1, 0, 0, // y >= 0
+      0, 0, 1, 0, // z >= 0
+      -1, 0, 0, 60 // x <= 60
+    };
+    Set<Integer> expected = new HashSet<>();
+    for (int i = 0; i < COUNT; i++) {
+      double[] box = boxes[i];
+      // for each plane, the box's corner furthest along the plane's normal is inside
+      if (box[3] >= box[1] && box[3] >= box[2] && box[4] >= 0 && box[5] >= 0 && box[0] <= 60) {
+        expected.add(i);
+      }
+    }
+
+    Set<Integer> found = new HashSet<>();
+    tree.queryFrustum(planes, found::add);
+
+    assertEquals(expected, found);
+  }
+
+  @Test
+  public void testRemovedIdsAreRejected() {
+    AabbTree<String> tree = new AabbTree<>(0.1);
+    int id = tree.insert("a", 0, 0, 0, 1, 1, 1);
+    tree.remove(id);
+
+    assertEquals(0, tree.size());
+    assertThrows(IllegalArgumentException.class, () -> tree.remove(id));
+    assertNull(tree.pick(-1, 0.5, 0.5, 1, 0, 0, Double.POSITIVE_INFINITY));
+  }
+}
@@ -0,0 +1,69 @@
+package edu.umich.soar.svsviewer.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentWildcardMapTest {
+
+  @Test
+  public void testSnapshotIsIsolatedFromWrites() {
+    ConcurrentWildcardMap<String> map = new ConcurrentWildcardMap<>();
+    map.put("name", "Amy");
+    map.put("nate", "Nate");
+    WildcardMap<String> snapshot = map.snapshot();
+
+    map.removeWithWildcards("na*");
+    map.put("names", "Amys");
+
+    assertThat(snapshot.getValuesWithWildcards("na*")).hasSameElementsAs(List.of("Amy", "Nate"));
+    assertEquals(List.of("Amys"), map.getValuesWithWildcards("na*"));
+  }
+
+  @Test
+  public void testComputeIfAbsent() {
+    ConcurrentWildcardMap<String> map = new ConcurrentWildcardMap<>();
+
+    assertEquals("Amy", map.computeIfAbsent("name", k -> "Amy"));
+    assertEquals("Amy", map.computeIfAbsent("name", k -> fail("Expected existing value")));
+    assertEquals(1, map.size(), "Expected size=1");
+  }
+
+  @Test
+  @Timeout(10)
+  public void testReadersSeeCompleteWrites() throws InterruptedException {
+    ConcurrentWildcardMap<Integer> map = new ConcurrentWildcardMap<>();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread reader =
+        new Thread(
+            () -> {
+              try {
+                while (!Thread.currentThread().isInterrupted()) {
+                  // every write adds or removes a pair of keys, so a snapshot never has half of one
+                  Set<Integer> values = new HashSet<>(map.getValuesWithWildcards("*"));
+                  for (int value : values) {
+                    assertTrue(values.contains(-value));
+                  }
+                }
+              } catch (Throwable t) {
+                failure.set(t);
+              }
+            });
+    reader.start();
+    for (int i = 1; i <= 2000; i++) {
+      map.putAll(Map.of("k" + i + "-a", i, "k" + i + "-b", -i));
+      if (i % 3 == 0) {
+        map.removePrefix("k" + (i / 3) + "-");
+      }
+    }
+    reader.interrupt();
+    reader.join();
+
+    assertNull(failure.get());
+  }
+}
@@ -4,8 +4,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class WildcardMapTest {
 
@@ -19,6 +21,28 @@ public class WildcardMapTest {
     assertEquals(3, map.size(), "Expected size=3");
   }
 
+  @Test
+  public void testPutExistingKeyReplacesValue() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("name", "John");
+    String previous = map.put("name", "Amy");
+
+    assertEquals("John", previous);
+    assertEquals("Amy", map.get("name"));
+    assertEquals(1, map.size(), "Expected size=1");
+  }
+
+  @Test
+  public void testGetPrefixOfKey() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("names", "Amys");
+
+    assertNull(map.get("name"));
+    assertFalse(map.containsKey("name"));
+    assertNull(map.get("namesake"));
+    assertEquals(List.of(), map.getWithWildcards("name"));
+  }
+
   @Test
   public void testGet() {
     WildcardMap<String> map = new WildcardMap<>();
@@ -95,6 +119,90 @@ public class WildcardMapTest {
         "knight should be in the result set");
   }
 
+  @Test
+  public void getWithWildcardsReturnsEachKeyOnce() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("banana", "fruit");
+    map.put("bandana", "scarf");
+
+    List<WildcardMap.Entry<String>> matches = map.getWithWildcards("*a*n*a*");
+
+    assertThat(matches)
+        .containsExactlyInAnyOrder(
+            new WildcardMap.Entry<>("banana", "fruit"),
+            new WildcardMap.Entry<>("bandana", "scarf"));
+  }
+
+  @Test
+  public void getWithWildcardsSkipsPrefixNodesWithoutValues() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("S1", "first");
+    map.put("S2", "second");
+    // leaves a node for "S" behind, now without a value
+    map.put("S", "prefix");
+    map.remove("S");
+
+    assertThat(map.getWithWildcards("S*"))
+        .containsExactlyInAnyOrder(
+            new WildcardMap.Entry<>("S1", "first"), new WildcardMap.Entry<>("S2", "second"));
+    assertThat(map.getValuesWithWildcards("S*")).doesNotContainNull().hasSize(2);
+  }
+
+  @Test
+  @Timeout(5)
+  public void getWithManyWildcardsOnLongKeys() {
+    WildcardMap<Integer> map = new WildcardMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put("a".repeat(100) + i, i);
+    }
+    // backtracking over every way of splitting the a's between the stars would never finish
+    assertEquals(List.of(), map.getWithWildcards("*a*a*a*a*a*a*a*a*a*a*b"));
+    assertEquals(100, map.getWithWildcards("*a*a*a*a*a*a*a*a*a*a*").size());
+    // more than 64 pattern states
+    assertEquals(
+        List.of(new WildcardMap.Entry<>("a".repeat(100) + 42, 42)),
+        map.getWithWildcards("*a".repeat(40) + "42"));
+  }
+
+  @Test
+  public void getWithWildcardsIsCachedUntilModified() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("name", "Amy");
+    map.put("nate", "Nate");
+
+    List<WildcardMap.Entry<String>> first = map.getWithWildcards("na*e");
+    assertSame(first, map.getWithWildcards("na*e"));
+    assertSame(map.getValuesWithWildcards("na*e"), map.getValuesWithWildcards("na*e"));
+
+    map.put("nave", "Dave");
+    assertThat(map.getValuesWithWildcards("na*e")).containsExactlyInAnyOrder("Amy", "Nate", "Dave");
+    map.put("nate", "Nat");
+    assertThat(map.getValuesWithWildcards("na*e")).containsExactlyInAnyOrder("Amy", "Nat", "Dave");
+    map.remove("name");
+    assertThat(map.getWithWildcards("na*e"))
+        .containsExactlyInAnyOrder(
+            new WildcardMap.Entry<>("nate", "Nat"), new WildcardMap.Entry<>("nave", "Dave"));
+    map.clear();
+    assertEquals(List.of(), map.getWithWildcards("na*e"));
+  }
+
+  @Test
+  public void getWithWildcardsKeepsFrequentPatternsCached() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("name", "Amy");
+    map.put("nate", "Nate");
+    WildcardMap<String> snapshot = map.snapshot();
+
+    for (WildcardMap<String> searched : List.of(map, snapshot)) {
+      List<String> frequent = searched.getValuesWithWildcards("na*e");
+      // far more one-off patterns than fit in the cache, but the frequent one is always more recent
+      for (int i = 0; i < 100; i++) {
+        searched.getValuesWithWildcards("*" + i);
+        assertSame(frequent, searched.getValuesWithWildcards("na*e"));
+      }
+    }
+  }
+
   @Test
   public void testRemove() {
     WildcardMap<String> map = new WildcardMap<>();
@@ -111,6 +219,208 @@ public class WildcardMapTest {
     assertTrue(map.containsKey("na*e"), "Expected map to still contain 'na*e'");
   }
 
+  @Test
+  public void testRemoveKeepsKeysSharingAPrefix() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("robot_arm", "arm");
+    map.put("robot_arm_link1", "link1");
+    map.put("robot_arm_link2", "link2");
+    map.put("robot_body", "body");
+
+    map.remove("robot_arm");
+    map.remove("robot_arm_link1");
+
+    assertEquals(2, map.size(), "Expected size=2");
+    assertEquals("link2", map.get("robot_arm_link2"));
+    assertEquals("body", map.get("robot_body"));
+    assertNull(map.get("robot_arm_link"));
+    assertThat(map.getWithWildcards("robot_*2"))
+        .containsExactly(new WildcardMap.Entry<>("robot_arm_link2", "link2"));
+
+    map.put("robot_arm", "arm");
+    assertThat(map.keySet())
+        .containsExactlyInAnyOrder("robot_arm", "robot_arm_link2", "robot_body");
+  }
+
+  @Test
+  public void testMatchesHashMapAfterRandomUpdates() {
+    Random random = new Random(42);
+    Map<String, Integer> expected = new HashMap<>();
+    WildcardMap<Integer> map = new WildcardMap<>();
+    for (int i = 0; i < 10000; i++) {
+      // short keys from a small alphabet, so that edges are split and merged often
+      String key = Integer.toString(random.nextInt(500), 3);
+      if (random.nextBoolean()) {
+        assertEquals(expected.put(key, i), map.put(key, i));
+      } else {
+        assertEquals(expected.remove(key), map.remove(key));
+      }
+    }
+
+    assertEquals(expected.size(), map.size());
+    assertThat(map.entrySet()).hasSameElementsAs(expected.entrySet());
+  }
+
+  @Test
+  public void testSnapshotsDoNotChange() {
+    Random random = new Random(42);
+    Map<String, Integer> expected = new HashMap<>();
+    WildcardMap<Integer> map = new WildcardMap<>();
+    List<Map<String, Integer>> expectedSnapshots = new ArrayList<>();
+    List<WildcardMap<Integer>> snapshots = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      String key = Integer.toString(random.nextInt(500), 3);
+      switch (random.nextInt(20)) {
+        case 0 -> {
+          expectedSnapshots.add(new HashMap<>(expected));
+          snapshots.add(map.snapshot());
+        }
+        case 1 -> {
+          String prefix = key.substring(0, Math.min(2, key.length()));
+          expected.keySet().removeIf(k -> k.startsWith(prefix));
+          map.removeWithWildcards(prefix + "*2");
+          map.removePrefix(prefix);
+        }
+        default -> {
+          if (random.nextBoolean()) {
+            assertEquals(expected.put(key, i), map.put(key, i));
+          } else {
+            assertEquals(expected.remove(key), map.remove(key));
+          }
+        }
+      }
+    }
+
+    assertThat(map.entrySet()).hasSameElementsAs(expected.entrySet());
+    for (int i = 0; i < snapshots.size(); i++) {
+      assertEquals(expectedSnapshots.get(i).size(), snapshots.get(i).size());
+      assertThat(snapshots.get(i).entrySet())
+          .hasSameElementsAs(expectedSnapshots.get(i).entrySet());
+    }
+  }
+
+  @Test
+  public void testRemoveWithWildcardsPrunesNodesChangedInPlace() {
+    WildcardMap<Integer> map = new WildcardMap<>();
+    map.put("x", 0);
+    for (int i = 0; i < 1000; i++) {
+      map.put("robot" + i + "_arm", i);
+      map.put("robot" + i + "_leg", i);
+    }
+
+    assertEquals(2000, map.removeWithWildcards("robot*").size());
+
+    assertEquals(1, map.size());
+    assertTrue(map.isCompact(), "Expected no value-less node to be left behind");
+  }
+
+  @Test
+  public void testRemoveWithWildcardsDoesNotChangeEarlierSnapshots() {
+    WildcardMap<Integer> map = new WildcardMap<>();
+    map.put("baa", 0);
+    map.put("aa", 0);
+    map.put("aaab", 3);
+    map.removeWithWildcards("**aa");
+    WildcardMap<Integer> snapshot = map.snapshot();
+
+    map.removeWithWildcards("baa**");
+
+    assertThat(snapshot.entrySet()).containsExactly(Map.entry("aaab", 3));
+    assertEquals(3, snapshot.get("aaab"));
+    assertTrue(map.isCompact());
+  }
+
+  private static boolean matches(String key, String keyWithWildcards) {
+    StringBuilder regex = new StringBuilder();
+    for (String part : keyWithWildcards.split("\\*", -1)) {
+      if (!regex.isEmpty()) {
+        regex.append(".*");
+      }
+      regex.append(Pattern.quote(part));
+    }
+    return key.matches(regex.toString());
+  }
+
+  private static String randomPattern(Random random) {
+    StringBuilder pattern = new StringBuilder();
+    int length = random.nextInt(6);
+    for (int i = 0; i < length; i++) {
+      pattern.append("ab*".charAt(random.nextInt(3)));
+    }
+    return pattern.toString();
+  }
+
+  @Test
+  public void testRandomWildcardRemovalsWithSnapshotsMatchTreeMap() {
+    Random random = new Random(7);
+    TreeMap<String, Integer> expected = new TreeMap<>();
+    WildcardMap<Integer> map = new WildcardMap<>();
+    List<Map<String, Integer>> expectedSnapshots = new ArrayList<>();
+    List<WildcardMap<Integer>> snapshots = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      switch (random.nextInt(10)) {
+        case 0 -> {
+          expectedSnapshots.add(new TreeMap<>(expected));
+          snapshots.add(map.snapshot());
+        }
+        case 1, 2 -> {
+          String pattern = randomPattern(random);
+          List<Integer> expectedValues = new ArrayList<>();
+          expected
+              .entrySet()
+              .removeIf(
+                  entry -> {
+                    boolean match = matches(entry.getKey(), pattern);
+                    if (match) {
+                      expectedValues.add(entry.getValue());
+                    }
+                    return match;
+                  });
+          assertThat(map.removeWithWildcards(pattern))
+              .as("removeWithWildcards(%s)", pattern)
+              .hasSameElementsAs(expectedValues);
+        }
+        default -> {
+          // short keys over a small alphabet share many prefixes
+          String key = Integer.toString(random.nextInt(200), 2).replace('0', 'a').replace('1', 'b');
+          assertEquals(expected.put(key, i), map.put(key, i));
+        }
+      }
+      assertTrue(map.isCompact(), "Expected no empty or single-child value-less nodes");
+    }
+
+    assertEquals(expected, new TreeMap<>(map));
+    for (int i = 0; i < snapshots.size(); i++) {
+      assertEquals(expectedSnapshots.get(i), new TreeMap<>(snapshots.get(i)));
+      for (String key : expectedSnapshots.get(i).keySet()) {
+        assertEquals(expectedSnapshots.get(i).get(key), snapshots.get(i).get(key));
+      }
+    }
+  }
+
+  @Test
+  public void testSnapshotIsReadOnly() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("name", "Amy");
+    WildcardMap<String> snapshot = map.snapshot();
+
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.put("nate", "Nate"));
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.removeWithWildcards("*"));
+    assertEquals(List.of("Amy"), snapshot.getValuesWithWildcards("na*"));
+  }
+
+  @Test
+  public void testClear() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("name", "Amy");
+    map.put("nate", "Nate");
+
+    map.clear();
+
+    assertTrue(map.isEmpty(), "Expected map to be empty");
+    assertNull(map.get("name"));
+  }
+
   @Test
   public void testRemoveWithWildcards() {
     WildcardMap<String> map = new WildcardMap<>();
@@ -124,6 +434,42 @@ public class WildcardMapTest {
     assertEquals(0, map.size(), "Expected map to be empty");
   }
 
+  @Test
+  public void testRemoveWithTrailingWildcard() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("robot", "robot");
+    map.put("robot_arm", "arm");
+    map.put("robot_arm_link1", "link1");
+    map.put("rocket", "rocket");
+
+    Collection<String> removed = map.removeWithWildcards("robot_*");
+
+    assertThat(removed).containsExactlyInAnyOrder("arm", "link1");
+    assertThat(map.keySet()).containsExactlyInAnyOrder("robot", "rocket");
+    map.put("robot_leg", "leg");
+    assertEquals("leg", map.get("robot_leg"));
+    assertEquals(3, map.size());
+  }
+
+  @Test
+  public void testRemovePrefix() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("table", "table");
+    map.put("table1", "table1");
+    map.put("table12", "table12");
+    map.put("tablet", "tablet");
+    map.put("tab", "tab");
+
+    assertThat(map.removePrefix("table1")).containsExactlyInAnyOrder("table1", "table12");
+    assertThat(map.keySet()).containsExactlyInAnyOrder("tab", "table", "tablet");
+    // ends inside the edge "le"
+    assertThat(map.removePrefix("tabl")).containsExactlyInAnyOrder("table", "tablet");
+    assertThat(map.removePrefix("tax")).isEmpty();
+    assertEquals(Map.of("tab", "tab"), new HashMap<>(map));
+    assertThat(map.removePrefix("")).containsExactly("tab");
+    assertTrue(map.isEmpty());
+  }
+
   @Test
   public void testEntrySet() {
     Map<String, String> hashMap = new HashMap<>();
@@ -142,4 +488,52 @@ public class WildcardMapTest {
     assertEquals(expectedEntries.size(), actualEntries.size(), "Expected entrySet size to be 3");
     assertThat(actualEntries).hasSameElementsAs(expectedEntries);
   }
+
+  @Test
+  public void testViewsAreLive() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("", "empty");
+    map.put("name", "Amy");
+    Collection<String> values = map.values();
+    Set<String> keys = map.keySet();
+    Set<Map.Entry<String, String>> entries = map.entrySet();
+
+    map.put("names", "Amys");
+    map.put("nate", "Nate");
+
+    assertThat(values).containsExactlyInAnyOrder("empty", "Amy", "Amys", "Nate");
+    assertThat(keys).containsExactlyInAnyOrder("", "name", "names", "nate");
+    assertTrue(entries.contains(Map.entry("nate", "Nate")));
+    assertEquals(4, entries.size());
+
+    assertTrue(keys.remove("names"));
+    assertFalse(map.containsKey("names"));
+    assertEquals(3, values.size());
+  }
+
+  @Test
+  public void testIteratorFailsFastOnModification() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("name", "Amy");
+    map.put("nate", "Nate");
+    Iterator<String> iterator = map.values().iterator();
+    iterator.next();
+
+    map.remove("name");
+
+    assertThrows(ConcurrentModificationException.class, iterator::next);
+  }
+
+  @Test
+  public void testForEachValue() {
+    WildcardMap<String> map = new WildcardMap<>();
+    map.put("name", "Amy");
+    map.put("names", "Amys");
+    map.put("nate", "Nate");
+
+    List<String> values = new ArrayList<>();
+    map.forEachValue(values::add);
+
+    assertThat(values).containsExactlyInAnyOrder("Amy", "Amys", "Nate");
+  }
 }